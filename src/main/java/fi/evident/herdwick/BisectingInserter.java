@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2012 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fi.evident.herdwick;
+
+import fi.evident.herdwick.RejectedRowsException.RejectedRow;
+import fi.evident.herdwick.dialects.Dialect;
+import fi.evident.herdwick.model.Column;
+import fi.evident.herdwick.model.Name;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.Connection;
+import java.sql.SQLDataException;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Inserts rows in batches, but isolates the rows that make a batch fail. When inserting a batch
+ * fails, its effects are rolled back to a savepoint and both halves of the batch are retried
+ * recursively until the failing rows are found. Finding each failing row takes a logarithmic
+ * amount of extra statements, whereas the rest of the rows are still inserted in batches.
+ * Only errors caused by the data itself are isolated: other failures, such as lost connections
+ * or missing tables, fail the whole insert.
+ */
+final class BisectingInserter {
+
+    @NotNull
+    private final Dialect dialect;
+
+    /**
+     * The column whose generated keys are read back, or {@code null} if they are not needed.
+     */
+    @Nullable
+    private final Column keyColumn;
+
+    @NotNull
+    private final List<RejectedRow> rejectedRows = new ArrayList<RejectedRow>();
+
+    @NotNull
+    private final List<List<?>> insertedRows = new ArrayList<List<?>>();
+
+    @NotNull
+    private long[] generatedKeys = new long[0];
+    private int generatedKeyCount = 0;
+
+    BisectingInserter(@NotNull Dialect dialect, @Nullable Column keyColumn) {
+        this.dialect = dialect;
+        this.keyColumn = keyColumn;
+    }
+
+    /**
+     * Inserts given rows, leaving out the ones that the database rejects. The rows that were inserted
+     * and the ones that were rejected are collected for {@link #getInsertedRows()} and
+     * {@link #getRejectedRows()}.
+     */
+    void insertRows(@NotNull Connection connection, @NotNull Name table, @NotNull List<Column> columns,
+                    @NotNull List<? extends List<?>> rows) throws SQLException {
+        if (rows.isEmpty())
+            return;
+
+        Savepoint savepoint = connection.setSavepoint();
+        try {
+            if (keyColumn != null)
+                addGeneratedKeys(dialect.insertRowsReturningKeys(connection, table, columns, rows, keyColumn));
+            else
+                dialect.insertRows(connection, table, columns, rows);
+            connection.releaseSavepoint(savepoint);
+            insertedRows.addAll(rows);
+
+        } catch (SQLException e) {
+            connection.rollback(savepoint);
+
+            if (!isDataError(e))
+                throw e;
+
+            if (rows.size() == 1) {
+                rejectedRows.add(new RejectedRow(rows.get(0), e));
+            } else {
+                int middle = rows.size() / 2;
+                insertRows(connection, table, columns, rows.subList(0, middle));
+                insertRows(connection, table, columns, rows.subList(middle, rows.size()));
+            }
+        }
+    }
+
+    private void addGeneratedKeys(@NotNull long[] keys) {
+        if (generatedKeyCount + keys.length > generatedKeys.length)
+            generatedKeys = Arrays.copyOf(generatedKeys, Math.max(2 * generatedKeys.length, generatedKeyCount + keys.length));
+
+        System.arraycopy(keys, 0, generatedKeys, generatedKeyCount, keys.length);
+        generatedKeyCount += keys.length;
+    }
+
+    @NotNull
+    List<RejectedRow> getRejectedRows() {
+        return rejectedRows;
+    }
+
+    @NotNull
+    List<List<?>> getInsertedRows() {
+        return insertedRows;
+    }
+
+    /**
+     * Returns the generated keys of the inserted rows, in the order of {@link #getInsertedRows()}.
+     */
+    @NotNull
+    long[] getGeneratedKeys() {
+        if (keyColumn == null) throw new IllegalStateException("generated keys are not read back");
+
+        return Arrays.copyOf(generatedKeys, generatedKeyCount);
+    }
+
+    /**
+     * Returns true if given exception, or any exception chained to it, is caused by invalid data or by
+     * violating a constraint, that is, if its SQLState belongs to class {@code 22} or {@code 23}.
+     * Drivers often report failed batches with a generic exception that has the cause chained.
+     */
+    static boolean isDataError(@NotNull SQLException e) {
+        for (Throwable t = e; t != null; t = (t.getCause() != null) ? t.getCause() : nextException(t)) {
+            if (t instanceof SQLDataException || t instanceof SQLIntegrityConstraintViolationException)
+                return true;
+
+            if (t instanceof SQLException) {
+                String state = ((SQLException) t).getSQLState();
+                if (state != null && (state.startsWith("22") || state.startsWith("23")))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    @Nullable
+    private static SQLException nextException(@NotNull Throwable t) {
+        return (t instanceof SQLException) ? ((SQLException) t).getNextException() : null;
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2012 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fi.evident.herdwick;
+
+import fi.evident.herdwick.generators.Batch;
+import fi.evident.herdwick.generators.DataGenerator;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Generates chunks of rows on background threads while the calling thread writes
+ * the previously generated chunks. Generated chunks are passed through a bounded
+ * queue so that generators can't run arbitrarily far ahead of the writer.
+ */
+final class ChunkPipeline {
+
+    /**
+     * Marker put to the queue by each generator thread when it has finished.
+     */
+    @NotNull
+    private static final List<List<?>> END_OF_CHUNKS = new ArrayList<List<?>>(0);
+
+    /**
+     * How long the writer waits for a chunk before checking whether the generator threads are still running.
+     */
+    private static final long POLL_INTERVAL_MILLIS = 100;
+
+    @NotNull
+    private final DataGenerator dataGenerator;
+
+    private final int generatorThreads;
+
+    ChunkPipeline(@NotNull DataGenerator dataGenerator, int generatorThreads) {
+        if (generatorThreads <= 0) throw new IllegalArgumentException("non-positive generator-threads: " + generatorThreads);
+
+        this.dataGenerator = dataGenerator;
+        this.generatorThreads = generatorThreads;
+    }
+
+    /**
+     * Generates rows for the batch in chunks of given size and passes the chunks to writer
+     * in the calling thread. Returns when all chunks have been written or throws if either
+     * the generation or writing fails.
+     */
+    void run(@NotNull final Batch batch, final int chunkSize, @NotNull ChunkWriter writer) {
+        final BlockingQueue<List<List<?>>> queue = new ArrayBlockingQueue<List<List<?>>>(generatorThreads);
+
+        // With a fixed seed, the chunks must also be written in the order they were generated
+        final Object orderLock = (dataGenerator.getSeed() != null) ? new Object() : null;
+
+        // Set when the writer stops taking chunks, so that generator threads don't block on a full queue
+        final AtomicBoolean stopped = new AtomicBoolean(false);
+
+        ExecutorService executor = Executors.newFixedThreadPool(generatorThreads, new DaemonThreadFactory("herdwick-generator"));
+        try {
+            List<Future<Void>> generators = new ArrayList<Future<Void>>(generatorThreads);
+            for (int i = 0; i < generatorThreads; i++) {
+                generators.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws InterruptedException {
+                        try {
+                            if (orderLock != null) {
+                                while (true) {
+                                    synchronized (orderLock) {
+                                        if (!generateChunk(batch, chunkSize, queue))
+                                            break;
+                                    }
+                                }
+                            } else {
+                                while (generateChunk(batch, chunkSize, queue)) {
+                                    // continue until the batch is ready
+                                }
+                            }
+                        } finally {
+                            if (stopped.get())
+                                queue.offer(END_OF_CHUNKS);
+                            else
+                                queue.put(END_OF_CHUNKS);
+                        }
+                        return null;
+                    }
+                }));
+            }
+
+            int running = generatorThreads;
+            while (running > 0) {
+                List<List<?>> rows = queue.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                if (rows == null) {
+                    // A generator thread that was interrupted may have exited without putting its marker
+                    checkForFailures(generators);
+                    if (allDone(generators) && queue.isEmpty())
+                        break;
+                } else if (rows == END_OF_CHUNKS) {
+                    running--;
+                    checkForFailures(generators);
+                } else {
+                    writer.write(rows);
+                }
+            }
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("interrupted while populating " + batch.getTable().getName(), e);
+        } finally {
+            stopped.set(true);
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Generates a chunk of rows and puts it to the queue. Returns false if no more rows are generated.
+     */
+    private boolean generateChunk(@NotNull Batch batch, int chunkSize, @NotNull BlockingQueue<List<List<?>>> queue) throws InterruptedException {
+        List<List<?>> rows = dataGenerator.generateRows(batch, chunkSize);
+        if (rows.isEmpty())
+            return false;
+
+        queue.put(rows);
+        return true;
+    }
+
+    private static void checkForFailures(@NotNull List<Future<Void>> generators) throws InterruptedException {
+        for (Future<Void> generator : generators) {
+            if (generator.isDone()) {
+                try {
+                    generator.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException)
+                        throw (RuntimeException) cause;
+                    else if (cause instanceof Error)
+                        throw (Error) cause;
+                    else
+                        throw new RuntimeException("failed to generate rows", cause);
+                }
+            }
+        }
+    }
+
+    private static boolean allDone(@NotNull List<Future<Void>> generators) {
+        for (Future<Void> generator : generators)
+            if (!generator.isDone())
+                return false;
+
+        return true;
+    }
+
+    /**
+     * Callback for writing chunks of generated rows.
+     */
+    interface ChunkWriter {
+        void write(@NotNull List<List<?>> rows);
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2012 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fi.evident.herdwick;
+
+import fi.evident.herdwick.dialects.Dialect;
+import fi.evident.herdwick.generators.Batch;
+import fi.evident.herdwick.generators.DataGenerator;
+import org.jetbrains.annotations.NotNull;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Populates a single table using multiple worker threads, each of which generates chunks
+ * of rows and inserts them using a connection of its own. The workers share the batch, so
+ * the rows of all workers are verified against the same unique constraints.
+ */
+final class ParallelWriter {
+
+    @NotNull
+    private final DataGenerator dataGenerator;
+
+    @NotNull
+    private final Dialect dialect;
+
+    @NotNull
+    private final DataSource dataSource;
+
+    private final int workers;
+
+    ParallelWriter(@NotNull DataGenerator dataGenerator, @NotNull Dialect dialect, @NotNull DataSource dataSource, int workers) {
+        if (workers <= 0) throw new IllegalArgumentException("non-positive workers: " + workers);
+
+        this.dataGenerator = dataGenerator;
+        this.dialect = dialect;
+        this.dataSource = dataSource;
+        this.workers = workers;
+    }
+
+    /**
+     * Generates and inserts rows for given batch in chunks of given size. Each chunk is committed
+     * separately. If any of the workers fails, the rest of the workers are stopped and the failure
+     * is rethrown.
+     */
+    void run(@NotNull final Batch batch, final int chunkSize) {
+        ExecutorService executor = Executors.newFixedThreadPool(workers, new DaemonThreadFactory("herdwick-writer"));
+        try {
+            CompletionService<Void> completionService = new ExecutorCompletionService<Void>(executor);
+            for (int i = 0; i < workers; i++) {
+                completionService.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws SQLException {
+                        insertChunks(batch, chunkSize);
+                        return null;
+                    }
+                });
+            }
+
+            for (int i = 0; i < workers; i++) {
+                try {
+                    completionService.take().get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException)
+                        throw (RuntimeException) cause;
+                    else if (cause instanceof Error)
+                        throw (Error) cause;
+                    else
+                        throw new RuntimeException("failed to populate " + batch.getTable().getName() + ": " + cause, cause);
+                }
+            }
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("interrupted while populating " + batch.getTable().getName(), e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void insertChunks(@NotNull Batch batch, int chunkSize) throws SQLException {
+        Connection connection = dataSource.getConnection();
+        try {
+            connection.setAutoCommit(false);
+            try {
+                List<List<?>> rows;
+                while (!Thread.currentThread().isInterrupted() && !(rows = dataGenerator.generateRows(batch, chunkSize)).isEmpty()) {
+                    dialect.insertRows(connection, batch.getTable().getName(), batch.getColumns(), rows);
+                    connection.commit();
+                }
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } catch (RuntimeException e) {
+                connection.rollback();
+                throw e;
+            }
+        } finally {
+            connection.close();
+        }
+    }
+}
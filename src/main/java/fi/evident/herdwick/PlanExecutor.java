@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2012 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fi.evident.herdwick;
+
+import fi.evident.herdwick.model.Name;
+import fi.evident.herdwick.model.Table;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+
+/**
+ * Populates the tables of a {@link PopulationPlan} using a pool of worker threads. Each table
+ * is populated as soon as all the tables it references have been populated, so that independent
+ * tables are populated concurrently.
+ * <p>
+ * In streaming mode, a table is started already when the tables it references through captured keys
+ * have been started, since it can generate references to the keys as soon as they are published.
+ * The workers take the tables in the order they were started, so a table waiting for keys never
+ * prevents the tables it waits for from running.
+ */
+final class PlanExecutor {
+
+    private final int threads;
+
+    private final boolean streaming;
+
+    PlanExecutor(int threads, boolean streaming) {
+        if (threads <= 0) throw new IllegalArgumentException("non-positive threads: " + threads);
+
+        this.threads = threads;
+        this.streaming = streaming;
+    }
+
+    /**
+     * Populates the tables of given plan using given callback. With a single thread, the tables are
+     * populated by the calling thread. Otherwise, if populating any table fails, no new tables are
+     * started, the rest of the workers are interrupted and the failure is rethrown.
+     *
+     * @return amount of rows inserted into each table, in the order of the plan
+     */
+    @NotNull
+    Map<Name, Integer> run(@NotNull PopulationPlan plan, @NotNull TablePopulator populator) {
+        Map<Table, Integer> insertedRows = (threads == 1) ? runSequentially(plan, populator) : runConcurrently(plan, populator);
+
+        Map<Name, Integer> result = new LinkedHashMap<Name, Integer>();
+        for (Table table : plan.getTables())
+            result.put(table.getName(), insertedRows.get(table));
+        return result;
+    }
+
+    @NotNull
+    private static Map<Table, Integer> runSequentially(@NotNull PopulationPlan plan, @NotNull TablePopulator populator) {
+        Map<Table, Integer> insertedRows = new HashMap<Table, Integer>();
+        for (Table table : plan.getTables())
+            insertedRows.put(table, populator.populate(table));
+        return insertedRows;
+    }
+
+    @NotNull
+    private Map<Table, Integer> runConcurrently(@NotNull PopulationPlan plan, @NotNull TablePopulator populator) {
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new DaemonThreadFactory("herdwick-table"));
+        try {
+            Scheduler scheduler = new Scheduler(plan, populator, new ExecutorCompletionService<Integer>(executor));
+            return scheduler.run();
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("interrupted while populating tables", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private boolean isStreamed(@NotNull PopulationPlan plan, @NotNull Table child, @NotNull Table parent) {
+        return streaming && plan.isStreamable(child, parent);
+    }
+
+    /**
+     * Keeps track of the tables whose prerequisites have been met.
+     */
+    private final class Scheduler {
+
+        @NotNull
+        private final PopulationPlan plan;
+
+        @NotNull
+        private final TablePopulator populator;
+
+        @NotNull
+        private final CompletionService<Integer> completionService;
+
+        @NotNull
+        private final Map<Table, Integer> unstartedParents = new HashMap<Table, Integer>();
+
+        @NotNull
+        private final Map<Table, Integer> unfinishedParents = new HashMap<Table, Integer>();
+
+        @NotNull
+        private final Set<Table> started = new HashSet<Table>();
+
+        @NotNull
+        private final Map<Future<Integer>, Table> running = new HashMap<Future<Integer>, Table>();
+
+        Scheduler(@NotNull PopulationPlan plan, @NotNull TablePopulator populator, @NotNull CompletionService<Integer> completionService) {
+            this.plan = plan;
+            this.populator = populator;
+            this.completionService = completionService;
+
+            for (Table table : plan.getTables()) {
+                int streamedParents = 0;
+                for (Table parent : plan.getParents(table))
+                    if (isStreamed(plan, table, parent))
+                        streamedParents++;
+
+                unstartedParents.put(table, streamedParents);
+                unfinishedParents.put(table, plan.getParents(table).size() - streamedParents);
+            }
+        }
+
+        @NotNull
+        Map<Table, Integer> run() throws InterruptedException {
+            Map<Table, Integer> insertedRows = new HashMap<Table, Integer>();
+
+            for (Table table : plan.getTables())
+                startIfReady(table);
+
+            while (!running.isEmpty()) {
+                Future<Integer> future = completionService.take();
+                Table table = running.remove(future);
+
+                try {
+                    insertedRows.put(table, future.get());
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException)
+                        throw (RuntimeException) cause;
+                    else if (cause instanceof Error)
+                        throw (Error) cause;
+                    else
+                        throw new RuntimeException("failed to populate " + table.getName() + ": " + cause, cause);
+                }
+
+                for (Table child : plan.getChildren(table)) {
+                    if (!isStreamed(plan, child, table)) {
+                        decrement(unfinishedParents, child);
+                        startIfReady(child);
+                    }
+                }
+            }
+
+            return insertedRows;
+        }
+
+        private void startIfReady(@NotNull Table table) {
+            if (started.contains(table) || unstartedParents.get(table) != 0 || unfinishedParents.get(table) != 0)
+                return;
+
+            started.add(table);
+            running.put(submit(table), table);
+
+            for (Table child : plan.getChildren(table)) {
+                if (isStreamed(plan, child, table)) {
+                    decrement(unstartedParents, child);
+                    startIfReady(child);
+                }
+            }
+        }
+
+        @NotNull
+        private Future<Integer> submit(@NotNull final Table table) {
+            return completionService.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() {
+                    return populator.populate(table);
+                }
+            });
+        }
+    }
+
+    private static void decrement(@NotNull Map<Table, Integer> counts, @NotNull Table table) {
+        counts.put(table, counts.get(table) - 1);
+    }
+
+    interface TablePopulator {
+        int populate(@NotNull Table table);
+    }
+}
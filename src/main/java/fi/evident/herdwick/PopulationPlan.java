@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2012 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fi.evident.herdwick;
+
+import fi.evident.herdwick.model.Name;
+import fi.evident.herdwick.model.Reference;
+import fi.evident.herdwick.model.Table;
+import fi.evident.herdwick.model.TableCollection;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.unmodifiableList;
+import static java.util.Collections.unmodifiableSet;
+
+/**
+ * Order in which a set of tables can be populated so that referenced tables are populated
+ * before the tables referencing them. References to tables outside the plan are assumed to
+ * refer to tables that are already populated.
+ */
+final class PopulationPlan {
+
+    @NotNull
+    private final List<Table> tables = new ArrayList<Table>();
+
+    @NotNull
+    private final Map<Table, Set<Table>> parents = new LinkedHashMap<Table, Set<Table>>();
+
+    @NotNull
+    private final Map<Table, Set<Table>> children = new HashMap<Table, Set<Table>>();
+
+    /**
+     * Pairs of child and parent tables where some reference can't be generated from captured keys.
+     */
+    @NotNull
+    private final Set<List<Table>> unstreamableReferences = new HashSet<List<Table>>();
+
+    /**
+     * Builds a plan for populating given tables.
+     *
+     * @throws IllegalArgumentException if the tables reference each other in a cycle or a table references itself
+     */
+    PopulationPlan(@NotNull TableCollection tableCollection, @NotNull Collection<Name> tableNames) {
+        for (Name name : tableNames) {
+            Table table = tableCollection.getTable(name);
+            parents.put(table, new LinkedHashSet<Table>());
+            children.put(table, new LinkedHashSet<Table>());
+        }
+
+        for (Table table : parents.keySet()) {
+            for (Reference reference : table.getForeignKeys()) {
+                Table target = reference.getTargetTable();
+                if (target == table)
+                    throw new IllegalArgumentException("can't plan population of " + table.getName() + " because it references itself: " + reference);
+
+                if (parents.containsKey(target)) {
+                    parents.get(table).add(target);
+                    children.get(target).add(table);
+
+                    if (!isCapturedKeyReference(reference))
+                        unstreamableReferences.add(asList(table, target));
+                }
+            }
+        }
+
+        // Visit the tables in the given order, so that the plan is deterministic
+        Set<Table> visited = new HashSet<Table>();
+        LinkedList<Table> path = new LinkedList<Table>();
+        for (Name name : tableNames)
+            visit(tableCollection.getTable(name), visited, path);
+    }
+
+    private void visit(@NotNull Table table, @NotNull Set<Table> visited, @NotNull LinkedList<Table> path) {
+        if (path.contains(table))
+            throw new IllegalArgumentException("can't plan population because of a reference cycle: " + describeCycle(table, path));
+
+        if (!visited.add(table))
+            return;
+
+        path.addLast(table);
+        for (Table parent : parents.get(table))
+            visit(parent, visited, path);
+        path.removeLast();
+
+        tables.add(table);
+    }
+
+    private static boolean isCapturedKeyReference(@NotNull Reference reference) {
+        return reference.getColumnCount() == 1
+            && reference.getTargetColumns().get(0).equals(reference.getTargetTable().getIntegerAutoIncrementColumn());
+    }
+
+    @NotNull
+    private static String describeCycle(@NotNull Table table, @NotNull List<Table> path) {
+        StringBuilder sb = new StringBuilder();
+        for (Table t : path.subList(path.indexOf(table), path.size()))
+            sb.append(t.getName()).append(" -> ");
+        return sb.append(table.getName()).toString();
+    }
+
+    /**
+     * Returns the tables in an order where each table comes after the tables it references.
+     */
+    @NotNull
+    List<Table> getTables() {
+        return unmodifiableList(tables);
+    }
+
+    /**
+     * Returns the tables of this plan that given table references.
+     */
+    @NotNull
+    Set<Table> getParents(@NotNull Table table) {
+        return unmodifiableSet(parents.get(table));
+    }
+
+    /**
+     * Returns true if all the references from {@code child} to {@code parent} can be generated from
+     * the captured keys of the parent, so that the child may be populated while the parent is still
+     * being populated.
+     */
+    boolean isStreamable(@NotNull Table child, @NotNull Table parent) {
+        return !unstreamableReferences.contains(asList(child, parent));
+    }
+
+    /**
+     * Returns the tables of this plan that reference given table.
+     */
+    @NotNull
+    Set<Table> getChildren(@NotNull Table table) {
+        return unmodifiableSet(children.get(table));
+    }
+}
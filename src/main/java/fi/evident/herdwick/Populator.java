@@ -23,23 +23,37 @@
 package fi.evident.herdwick;
 
 import fi.evident.dalesbred.*;
+import fi.evident.herdwick.RejectedRowsException.RejectedRow;
 import fi.evident.herdwick.dialects.Dialect;
 import fi.evident.herdwick.dialects.MetadataProvider;
 import fi.evident.herdwick.generators.Batch;
 import fi.evident.herdwick.generators.DataGenerator;
 import fi.evident.herdwick.generators.Generator;
+import fi.evident.herdwick.generators.KeyPool;
+import fi.evident.herdwick.generators.SingleColumnGenerator;
+import fi.evident.herdwick.generators.TablePlan;
+import fi.evident.herdwick.generators.UniqueVerification;
+import fi.evident.herdwick.model.Column;
 import fi.evident.herdwick.model.Name;
+import fi.evident.herdwick.model.Reference;
 import fi.evident.herdwick.model.Table;
 import fi.evident.herdwick.model.TableCollection;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import javax.sql.DataSource;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 
 import static fi.evident.dalesbred.SqlQuery.query;
 import static fi.evident.herdwick.utils.ObjectUtils.requireNonNull;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
 import static java.util.Collections.singletonList;
 
 /**
@@ -65,8 +79,33 @@ public final class Populator {
     @Nullable
     private TableCollection tables;
 
+    /**
+     * Compiled plans of tables, reused by subsequent populate-calls.
+     *
+     * @see #invalidatePlans()
+     */
+    @NotNull
+    private final Map<Table, TablePlan> plans = new HashMap<Table, TablePlan>();
+
     private boolean batchMode = true;
 
+    private boolean isolateFailingRows = false;
+
+    private boolean captureGeneratedKeys = false;
+
+    private boolean preallocateKeys = false;
+
+    private int chunkSize = Integer.MAX_VALUE;
+
+    private int generatorThreads = 0;
+
+    private int tableThreads = 1;
+
+    private boolean streamCapturedKeys = false;
+
+    @NotNull
+    private UniqueVerification uniqueVerification = UniqueVerification.CLIENT;
+
     /**
      * Constructs new Populator for given database.
      */
@@ -108,34 +147,267 @@ public final class Populator {
      * @param  table to populate
      * @param  count of rows to insert
      * @return amount of rows actually inserted
+     * @throws RejectedRowsException if failing rows are isolated and the database rejected some rows
+     * @see #setChunkSize(int)
+     * @see #setIsolateFailingRows(boolean)
      */
     public int populate(@NotNull Name table, int count) {
+        final Batch batch = createBatch(requireNonNull(table), count);
+        try {
+            return populate(batch);
+        } finally {
+            invalidatePlansReferencing(batch.getTable());
+        }
+    }
+
+    private int populate(@NotNull final Batch batch) {
+        final List<RejectedRow> rejectedRows = new ArrayList<RejectedRow>();
+
+        if (generatorThreads != 0) {
+            new ChunkPipeline(dataGenerator, generatorThreads).run(batch, chunkSize, new ChunkPipeline.ChunkWriter() {
+                @Override
+                public void write(@NotNull List<List<?>> rows) {
+                    insertRows(batch, rows, rejectedRows);
+                }
+            });
+        }
+
+        // Without generator threads, this generates all the rows. Otherwise this replaces
+        // the rows that the database rejected after the generators had already finished.
+        List<List<?>> rows;
+        while (!(rows = dataGenerator.generateRows(batch, chunkSize)).isEmpty())
+            insertRows(batch, rows, rejectedRows);
+
+        if (!rejectedRows.isEmpty())
+            throw new RejectedRowsException(batch.getTable().getName(), batch.getCurrentSize() - rejectedRows.size(), rejectedRows);
+
+        return batch.getCurrentSize();
+    }
+
+    /**
+     * Populates multiple tables, inserting the given amount of rows into each of them. The tables are
+     * populated in an order where referenced tables are populated before the tables referencing them,
+     * so the caller does not need to care about the order. References to tables that are not given are
+     * assumed to refer to tables that are already populated. If multiple table threads are used, tables
+     * that don't depend on each other are populated concurrently.
+     *
+     * @param  counts amount of rows to insert for each table
+     * @return amount of rows actually inserted into each table, in the order the tables were populated
+     * @throws IllegalArgumentException if the tables reference each other in a cycle or any table references itself
+     * @see #setTableThreads(int)
+     */
+    @NotNull
+    public Map<Name, Integer> populateAll(@NotNull final Map<Name, Integer> counts) {
+        if (streamCapturedKeys && !captureGeneratedKeys)
+            throw new IllegalStateException("streaming captured keys requires capturing generated keys");
+
+        PopulationPlan plan = new PopulationPlan(getTables(), counts.keySet());
+
+        // Tables may be started before the tables they reference have been populated, so they can't
+        // use plans compiled before the referenced tables are populated.
+        for (Table table : plan.getTables())
+            invalidatePlansReferencing(table);
+
+        // Mark the pools as loading before any tables are started, so that children wait for the keys
+        // of their parents instead of reading the parents from the database.
+        final Map<Table, KeyPool> loadingPools = new HashMap<Table, KeyPool>();
+        if (streamCapturedKeys) {
+            for (Table table : plan.getTables()) {
+                Column keyColumn = table.getIntegerAutoIncrementColumn();
+                if (keyColumn != null) {
+                    KeyPool pool = dataGenerator.keyPoolFor(keyColumn);
+                    pool.startLoading();
+                    loadingPools.put(table, pool);
+                }
+            }
+        }
+
+        try {
+            return new PlanExecutor(tableThreads, streamCapturedKeys).run(plan, new PlanExecutor.TablePopulator() {
+                @Override
+                public int populate(@NotNull Table table) {
+                    KeyPool pool = loadingPools.get(table);
+                    try {
+                        return Populator.this.populate(table.getName(), counts.get(table.getName()));
+                    } finally {
+                        if (pool != null)
+                            pool.finishLoading();
+                    }
+                }
+            });
+        } finally {
+            for (KeyPool pool : loadingPools.values())
+                pool.finishLoading();
+        }
+    }
+
+    /**
+     * @see #populate(fi.evident.herdwick.model.Name, int, javax.sql.DataSource, int)
+     */
+    public int populate(@NotNull String table, int count, @NotNull DataSource dataSource, int workers) {
+        return populate(new Name(defaultSchema, table), count, dataSource, workers);
+    }
+
+    /**
+     * Tries to insert {@code count} rows into {@code table} using {@code workers} parallel threads,
+     * each of which uses a connection of its own obtained from {@code dataSource}. The workers generate
+     * and insert disjoint chunks of rows and commit each chunk separately. Uniqueness of the rows is
+     * verified over all the workers. Since the workers can't see uncommitted data of the current
+     * transaction, referenced rows should be committed before calling this method.
+     * <p>
+     * The rows are inserted in chunks of size {@link #getChunkSize()}, but each worker gets at least one chunk
+     * if possible. Registered generators must be thread-safe.
+     *
+     * @param  table to populate
+     * @param  count of rows to insert
+     * @param  dataSource providing connections for workers
+     * @param  workers amount of parallel workers
+     * @return amount of rows actually inserted
+     */
+    public int populate(@NotNull Name table, int count, @NotNull DataSource dataSource, int workers) {
+        if (workers <= 0) throw new IllegalArgumentException("non-positive workers: " + workers);
+        if (uniqueVerification != UniqueVerification.CLIENT)
+            throw new IllegalStateException("parallel workers support only client-side verification of unique constraints");
+
         Batch batch = createBatch(requireNonNull(table), count);
+        try {
+            int rowsPerWorker = max(1, (count + workers - 1) / workers);
+            new ParallelWriter(dataGenerator, dialect, requireNonNull(dataSource), workers).run(batch, min(chunkSize, rowsPerWorker));
 
-        @SQL
-        String insert = dialect.createInsert(batch.getTable().getName(), batch.getColumns());
+            return batch.getCurrentSize();
+        } finally {
+            invalidatePlansReferencing(batch.getTable());
+        }
+    }
+
+    private void insertRows(@NotNull final Batch batch, @NotNull final List<? extends List<?>> rows, @NotNull List<RejectedRow> rejectedRows) {
+        if (batch.getUniqueVerification() == UniqueVerification.DATABASE) {
+            int inserted = db.withTransaction(new TransactionCallback<Integer>() {
+                @Override
+                public Integer execute(@NotNull TransactionContext tx) throws SQLException {
+                    return dialect.insertNonConflictingRows(tx.getConnection(), batch.getTable(), batch.getColumns(), batch.getUniqueConstraints(), rows);
+                }
+            });
+            batch.rejectRows(rows.size() - inserted);
+
+        } else if (batch.getUniqueVerification() == UniqueVerification.OPTIMISTIC) {
+            int inserted = db.withTransaction(new TransactionCallback<Integer>() {
+                @Override
+                public Integer execute(@NotNull TransactionContext tx) throws SQLException {
+                    return dialect.insertRowsIgnoringConflicts(tx.getConnection(), batch.getTable(), batch.getColumns(), batch.getUniqueConstraints(), rows);
+                }
+            });
+            batch.rejectRows(rows.size() - inserted);
+
+        } else if (batchMode && isolateFailingRows) {
+            final Column keyColumn = captureGeneratedKeys ? batch.getTable().getIntegerAutoIncrementColumn() : null;
+            final boolean readKeys = keyColumn != null && batch.getPreallocatedKeyColumn() == null;
+            BisectingInserter inserter = db.withTransaction(new TransactionCallback<BisectingInserter>() {
+                @Override
+                public BisectingInserter execute(@NotNull TransactionContext tx) throws SQLException {
+                    BisectingInserter inserter = new BisectingInserter(dialect, readKeys ? keyColumn : null);
+                    inserter.insertRows(tx.getConnection(), batch.getTable().getName(), batch.getColumns(), rows);
+                    return inserter;
+                }
+            });
+            rejectedRows.addAll(inserter.getRejectedRows());
+
+            if (keyColumn != null)
+                dataGenerator.keyPoolFor(keyColumn).addAll(readKeys ? inserter.getGeneratedKeys() : batch.getPreallocatedKeys(inserter.getInsertedRows()));
+
+        } else if (batchMode) {
+            final Column keyColumn = captureGeneratedKeys ? batch.getTable().getIntegerAutoIncrementColumn() : null;
+            if (keyColumn != null && batch.getPreallocatedKeyColumn() == null) {
+                long[] keys = db.withTransaction(new TransactionCallback<long[]>() {
+                    @Override
+                    public long[] execute(@NotNull TransactionContext tx) throws SQLException {
+                        return dialect.insertRowsReturningKeys(tx.getConnection(), batch.getTable().getName(), batch.getColumns(), rows, keyColumn);
+                    }
+                });
+                dataGenerator.keyPoolFor(keyColumn).addAll(keys);
+
+            } else {
+                db.withTransaction(new TransactionCallback<Integer>() {
+                    @Override
+                    public Integer execute(@NotNull TransactionContext tx) throws SQLException {
+                        return dialect.insertRows(tx.getConnection(), batch.getTable().getName(), batch.getColumns(), rows);
+                    }
+                });
+
+                // Preallocated keys are already known, so they don't need to be read back
+                if (keyColumn != null)
+                    dataGenerator.keyPoolFor(keyColumn).addAll(batch.getPreallocatedKeys(rows));
+            }
 
-        if (batchMode) {
-            db.updateBatch(insert, batch.rowsToInsert());
         } else {
-            for (List<?> row : batch.rowsToInsert())
+            @SQL
+            String insert = batch.getPlan().getInsert();
+            if (insert == null)
+                insert = dialect.createInsert(batch.getTable().getName(), batch.getColumns());
+
+            for (List<?> row : rows)
                 db.update(query(insert, row));
         }
-
-        return batch.getCurrentSize();
     }
 
     @NotNull
     private Batch createBatch(@NotNull Name tableName, int size) {
-        Table table = getTables().getTable(tableName);
-        ResultTable existingData = db.findTable(dialect.selectAll(table.getNonAutoIncrementColumns(), table));
-        Batch batch = new Batch(table, existingData, size);
+        Batch batch = new Batch(planFor(getTables().getTable(tableName)), size);
 
         dataGenerator.prepare(batch);
 
         return batch;
     }
 
+    /**
+     * Returns the cached plan for given table, compiling a new one if there is none or if the
+     * cached plan was compiled for different settings.
+     */
+    @NotNull
+    private TablePlan planFor(@NotNull Table table) {
+        synchronized (plans) {
+            TablePlan plan = plans.get(table);
+            if (plan != null && plan.getUniqueVerification() == uniqueVerification && plan.isPreallocateKeys() == preallocateKeys)
+                return plan;
+        }
+
+        // Compiling may load data from the database, so other tables are not blocked meanwhile
+        TablePlan plan = dataGenerator.compilePlan(table, uniqueVerification, preallocateKeys);
+        synchronized (plans) {
+            plans.put(table, plan);
+        }
+        return plan;
+    }
+
+    /**
+     * Discards the plans of tables referencing given table, since their generators may have
+     * loaded the keys of the table before it was populated.
+     */
+    private void invalidatePlansReferencing(@NotNull Table table) {
+        synchronized (plans) {
+            for (Iterator<Table> it = plans.keySet().iterator(); it.hasNext(); )
+                for (Reference reference : it.next().getForeignKeys())
+                    if (reference.getTargetTable() == table) {
+                        it.remove();
+                        break;
+                    }
+        }
+    }
+
+    /**
+     * Discards the cached plans of all tables. The populator compiles a plan for each table when
+     * it is first populated and reuses it for subsequent populate-calls, so that the generators are
+     * not set up again. Among other things, the plan contains the keys loaded from referenced tables.
+     * The plans are invalidated automatically when generators are registered, settings affecting the
+     * generators are changed, or referenced tables are populated by this populator, but if referenced
+     * tables are modified by other means, this should be called to make the changes visible.
+     */
+    public void invalidatePlans() {
+        synchronized (plans) {
+            plans.clear();
+        }
+    }
+
     /**
      * @see #registerGeneratorForColumn(fi.evident.herdwick.model.Name, String, fi.evident.herdwick.generators.Generator)
      */
@@ -146,14 +418,8 @@ public final class Populator {
     /**
      * Registers generator that will be used for given column instead of the automatically determined generator.
      */
-    public void registerGeneratorForColumn(@NotNull Name table, @NotNull String column, @NotNull final Generator<?> generator) {
-        registerGeneratorForColumns(table, singletonList(column), new Generator<List<?>>() {
-            @Nullable
-            @Override
-            public List<?> randomValue(@NotNull Random random) {
-                return singletonList(generator.randomValue(random));
-            }
-        });
+    public void registerGeneratorForColumn(@NotNull Name table, @NotNull String column, @NotNull Generator<?> generator) {
+        registerGeneratorForColumns(table, singletonList(column), new SingleColumnGenerator(generator));
     }
 
     /**
@@ -167,7 +433,12 @@ public final class Populator {
      * Registers a generator that will be used to generate value for the given set of columns.
      */
     public void registerGeneratorForColumns(@NotNull Name table, @NotNull List<String> columns, @NotNull Generator<List<?>> generator) {
-        getTables().getTable(table).registerGenerator(columns, generator);
+        Table t = getTables().getTable(table);
+        t.registerGenerator(columns, generator);
+
+        synchronized (plans) {
+            plans.remove(t);
+        }
     }
 
     /**
@@ -184,11 +455,319 @@ public final class Populator {
      * This is efficient, but produces less helpful error messages when operation fails. This
      * method can be used to disable the match mode, in which case individual inserts are performed
      * for all rows.
+     *
+     * @see #setIsolateFailingRows(boolean)
      */
     public void setBatchMode(boolean batchMode) {
         this.batchMode = batchMode;
     }
 
+    /**
+     * Returns whether the rows failing a batch are isolated.
+     *
+     * @see #setIsolateFailingRows(boolean)
+     */
+    public boolean isIsolateFailingRows() {
+        return isolateFailingRows;
+    }
+
+    /**
+     * In batch mode, a single failing row normally makes the whole populate-call fail without telling which
+     * row failed. If failing rows are isolated, a failed batch is rolled back to a savepoint and split in
+     * halves recursively until the failing rows are found, which costs only a logarithmic amount of extra
+     * statements for each failing row. The rest of the rows are inserted normally, after which a
+     * {@link RejectedRowsException} describing the failed rows is thrown. Failing rows are not replaced
+     * with new rows. This applies only to batch mode with client-side verification of unique constraints.
+     * If generated keys are captured, only the keys of the inserted rows are added to the pool.
+     *
+     * @see #setBatchMode(boolean)
+     * @see #setCaptureGeneratedKeys(boolean)
+     */
+    public void setIsolateFailingRows(boolean isolateFailingRows) {
+        this.isolateFailingRows = isolateFailingRows;
+    }
+
+    /**
+     * Returns the strategy used for verifying unique constraints.
+     *
+     * @see #setUniqueVerification(UniqueVerification)
+     */
+    @NotNull
+    public UniqueVerification getUniqueVerification() {
+        return uniqueVerification;
+    }
+
+    /**
+     * By default, the keys of unique constraints of existing and generated rows are kept in memory
+     * for verifying the generated rows. For tables too large for that, this method can be used to
+     * make the database verify the rows instead, or if collisions are rare, to skip verification
+     * and let the database drop the conflicting rows. See {@link UniqueVerification} for details.
+     * Only client-side verification supports inserting rows one by one (when batch mode is disabled)
+     * and inserting with parallel connections.
+     */
+    public void setUniqueVerification(@NotNull UniqueVerification uniqueVerification) {
+        this.uniqueVerification = requireNonNull(uniqueVerification);
+    }
+
+    /**
+     * Returns the maximum amount of rows inserted by a single insert statement.
+     *
+     * @see #setRowsPerStatement(int)
+     */
+    public int getRowsPerStatement() {
+        return dialect.getRowsPerStatement();
+    }
+
+    /**
+     * In batch mode, the populator inserts multiple rows with each insert statement, since
+     * most databases process these much faster than separate statements for each row. This
+     * method can be used to set the maximum amount of rows per statement. The amount is further
+     * limited by the amount of parameters the database accepts for a single statement. Dialects
+     * that have even faster ways for inserting rows (e.g. {@code COPY} for PostgreSQL) ignore
+     * this setting.
+     */
+    public void setRowsPerStatement(int rowsPerStatement) {
+        dialect.setRowsPerStatement(rowsPerStatement);
+    }
+
+    /**
+     * Returns the maximum amount of rows that are generated and inserted at once.
+     *
+     * @see #setChunkSize(int)
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * By default, all rows of a populate-call are generated in memory before inserting them.
+     * For large amounts of rows this method can be used to generate and insert rows in chunks
+     * of given size, so that memory is needed only for a single chunk and for the keys of unique
+     * constraints. If the call is not made inside an existing transaction, each chunk is
+     * committed in a transaction of its own.
+     */
+    public void setChunkSize(int chunkSize) {
+        if (chunkSize <= 0) throw new IllegalArgumentException("non-positive chunk-size: " + chunkSize);
+
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Returns the amount of background threads used for generating rows.
+     *
+     * @see #setGeneratorThreads(int)
+     */
+    public int getGeneratorThreads() {
+        return generatorThreads;
+    }
+
+    /**
+     * By default, rows are generated and inserted in turns by the calling thread. Setting a positive
+     * amount of generator threads makes the populator generate chunks of rows in background threads
+     * while the calling thread inserts previously generated chunks, so that generation and insertion
+     * overlap. Only a bounded amount of generated chunks are kept in memory at any time. This is useful
+     * only when rows are inserted in multiple chunks and it requires that all registered generators
+     * are thread-safe.
+     *
+     * @see #setChunkSize(int)
+     */
+    public void setGeneratorThreads(int generatorThreads) {
+        if (generatorThreads < 0) throw new IllegalArgumentException("negative generator-threads: " + generatorThreads);
+
+        this.generatorThreads = generatorThreads;
+    }
+
+    /**
+     * Returns whether generated keys of inserted rows are captured.
+     *
+     * @see #setCaptureGeneratedKeys(boolean)
+     */
+    public boolean isCaptureGeneratedKeys() {
+        return captureGeneratedKeys;
+    }
+
+    /**
+     * By default, generating foreign keys requires reading the keys of the referenced table from the
+     * database. If generated keys are captured, the values that the database generates for the single
+     * auto-increment column of a table are collected into a compact pool as the rows are inserted, and
+     * foreign keys referencing the column are generated from the pool without reading the table again.
+     * The references will then point only to the rows inserted by this populator. Keys are captured only
+     * in batch mode with client-side verification of unique constraints. Since the database can't stream
+     * generated keys back from bulk operations such as {@code COPY}, multi-row insert statements are used
+     * instead of them, unless the keys are preallocated.
+     *
+     * @see #setPreallocateKeys(boolean)
+     */
+    public void setCaptureGeneratedKeys(boolean captureGeneratedKeys) {
+        this.captureGeneratedKeys = captureGeneratedKeys;
+    }
+
+    /**
+     * Returns whether keys of auto-increment columns are preallocated.
+     *
+     * @see #setPreallocateKeys(boolean)
+     */
+    public boolean isPreallocateKeys() {
+        return preallocateKeys;
+    }
+
+    /**
+     * By default, the database generates the values of auto-increment columns when rows are inserted.
+     * If keys are preallocated, the populator reserves a block of values from the sequence or identity
+     * backing the single auto-increment column of the table before generating rows, and inserts the
+     * values explicitly. Captured keys are then known without reading them back from the database,
+     * even when the rows are inserted with bulk operations. The column must accept explicit values
+     * and rows inserted by others at the same time must not use the sequence. Preallocation requires
+     * client-side verification of unique constraints and is supported only on PostgreSQL and HSQLDB.
+     *
+     * @see #setCaptureGeneratedKeys(boolean)
+     */
+    public void setPreallocateKeys(boolean preallocateKeys) {
+        this.preallocateKeys = preallocateKeys;
+    }
+
+    /**
+     * Returns the amount of tables that {@link #populateAll(Map)} populates concurrently.
+     *
+     * @see #setTableThreads(int)
+     */
+    public int getTableThreads() {
+        return tableThreads;
+    }
+
+    /**
+     * By default, {@link #populateAll(Map)} populates the tables one at a time using the calling thread.
+     * Setting the amount of table threads to greater than one makes it populate tables that don't depend
+     * on each other concurrently using a pool of worker threads. Each worker uses a connection of its own
+     * and commits the rows of each table, so this should not be used inside a transaction. It also requires
+     * that all registered generators are thread-safe.
+     */
+    public void setTableThreads(int tableThreads) {
+        if (tableThreads <= 0) throw new IllegalArgumentException("non-positive table-threads: " + tableThreads);
+
+        this.tableThreads = tableThreads;
+    }
+
+    /**
+     * Returns whether {@link #populateAll(Map)} streams captured keys from parent tables to child tables.
+     *
+     * @see #setStreamCapturedKeys(boolean)
+     */
+    public boolean isStreamCapturedKeys() {
+        return streamCapturedKeys;
+    }
+
+    /**
+     * By default, {@link #populateAll(Map)} starts populating a table only after all the tables it references
+     * have been populated. If captured keys are streamed, a table referencing other tables only through their
+     * captured keys is started as soon as the referenced tables have been started, and its references are
+     * generated from the keys of the chunks committed so far. This way parents and children of a deep chain of
+     * references are populated concurrently. This requires capturing generated keys and more than one table
+     * thread. The references will point only to the rows inserted by this populator.
+     *
+     * @see #setCaptureGeneratedKeys(boolean)
+     * @see #setTableThreads(int)
+     */
+    public void setStreamCapturedKeys(boolean streamCapturedKeys) {
+        this.streamCapturedKeys = streamCapturedKeys;
+    }
+
+    /**
+     * Returns the seed used for generating random data, or {@code null} if a random seed is used.
+     *
+     * @see #setSeed(Long)
+     */
+    @Nullable
+    public Long getSeed() {
+        return dataGenerator.getSeed();
+    }
+
+    /**
+     * By default, each populator generates different data. Setting a seed makes the generated data depend only
+     * on the seed, the schema and the existing data, so that runs with the same seed produce identical rows in
+     * identical order. The random values of each chunk are derived from the seed, the table, the index of the
+     * chunk and the columns of each generator, so the values of a column don't depend on the other columns of
+     * the table, and the chunks of a table are generated one at a time, so the data doesn't depend on the
+     * amount of generator or table threads. Generation still overlaps with insertion. The order of the rows is
+     * not preserved when parallel workers insert them, and references generated from streamed keys depend on
+     * timing, as do replacements for rows rejected by the database (see {@link UniqueVerification}) when
+     * generator threads are used. The seed should be set before populating any tables, and registered
+     * generators must use only the {@link Random} they are given. The indices of the chunks of a table continue
+     * over populate-calls, so populating the same table again produces new rows, and setting the seed again
+     * starts over. Setting the seed to {@code null} restores random seeds.
+     */
+    public void setSeed(@Nullable Long seed) {
+        dataGenerator.setSeed(seed);
+        invalidatePlans();
+    }
+
+    /**
+     * Returns the maximum amount of referenced keys loaded for generating foreign keys.
+     *
+     * @see #setReferencePoolSize(int)
+     */
+    public int getReferencePoolSize() {
+        return dataGenerator.getReferencePoolSize();
+    }
+
+    /**
+     * By default, all the keys of referenced tables are loaded into memory for generating foreign keys.
+     * For large referenced tables this method can be used to limit the amount of loaded keys, in which
+     * case a random sample of keys is used. If the database supports sampling, only part of the referenced
+     * table is read. Otherwise the whole table is scanned, but memory is needed only for the sample.
+     * Value 0 means that all the keys are loaded. References to dense ranges of integer keys are
+     * generated without loading the keys regardless of this setting.
+     *
+     * @see #setDenseReferenceThreshold(double)
+     */
+    public void setReferencePoolSize(int referencePoolSize) {
+        dataGenerator.setReferencePoolSize(referencePoolSize);
+        invalidatePlans();
+    }
+
+    /**
+     * Returns the density of referenced integer keys above which they are not loaded.
+     *
+     * @see #setDenseReferenceThreshold(double)
+     */
+    public double getDenseReferenceThreshold() {
+        return dataGenerator.getDenseReferenceThreshold();
+    }
+
+    /**
+     * When generating foreign keys referencing a single integer column, the populator first queries
+     * the minimum, maximum and count of referenced values. If the ratio of count to the size of the
+     * range is at least the given threshold, references are generated directly from the range instead
+     * of loading the referenced values. If the range contains gaps, the referenced column is scanned
+     * into a bitmap that requires just one bit for each value in the range. Values greater than 1
+     * disable this optimization. The default threshold is 0.9.
+     */
+    public void setDenseReferenceThreshold(double denseReferenceThreshold) {
+        dataGenerator.setDenseReferenceThreshold(denseReferenceThreshold);
+        invalidatePlans();
+    }
+
+    /**
+     * Returns whether unique values are generated by construction.
+     *
+     * @see #setUniqueValuesByConstruction(boolean)
+     */
+    public boolean isUniqueValuesByConstruction() {
+        return dataGenerator.isUniqueValuesByConstruction();
+    }
+
+    /**
+     * By default, values of all columns are generated randomly and rows violating unique constraints
+     * are discarded. As the amount of rows approaches the amount of possible values, most of the
+     * generated rows are discarded. This method can be used to enable generation of distinct values
+     * for integer and varchar columns that belong to unique constraints, in which case generated
+     * rows are accepted on the first try until all the possible values have been used.
+     */
+    public void setUniqueValuesByConstruction(boolean uniqueValuesByConstruction) {
+        dataGenerator.setUniqueValuesByConstruction(uniqueValuesByConstruction);
+        invalidatePlans();
+    }
+
     @NotNull
     private TableCollection getTables() {
         if (tables == null) {
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2012 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fi.evident.herdwick;
+
+import fi.evident.herdwick.model.Name;
+import org.jetbrains.annotations.NotNull;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Collections.unmodifiableList;
+
+/**
+ * Thrown when the database rejected some of the generated rows, but the rest of the rows
+ * were inserted successfully.
+ *
+ * @see Populator#setIsolateFailingRows(boolean)
+ */
+public final class RejectedRowsException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int MAX_REPORTED_ROWS = 10;
+
+    private final int insertedRows;
+
+    @NotNull
+    private final List<RejectedRow> rejectedRows;
+
+    RejectedRowsException(@NotNull Name table, int insertedRows, @NotNull List<RejectedRow> rejectedRows) {
+        super(createMessage(table, insertedRows, rejectedRows), rejectedRows.get(0).getCause());
+
+        this.insertedRows = insertedRows;
+        this.rejectedRows = unmodifiableList(new ArrayList<RejectedRow>(rejectedRows));
+    }
+
+    @NotNull
+    private static String createMessage(@NotNull Name table, int insertedRows, @NotNull List<RejectedRow> rejectedRows) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Inserted ").append(insertedRows).append(" rows into ").append(table);
+        sb.append(", but ").append(rejectedRows.size()).append(" rows were rejected:");
+
+        for (RejectedRow row : rejectedRows.subList(0, Math.min(rejectedRows.size(), MAX_REPORTED_ROWS)))
+            sb.append("\n  ").append(row);
+
+        if (rejectedRows.size() > MAX_REPORTED_ROWS)
+            sb.append("\n  ...");
+
+        return sb.toString();
+    }
+
+    /**
+     * Returns the amount of rows that were inserted successfully.
+     */
+    public int getInsertedRows() {
+        return insertedRows;
+    }
+
+    @NotNull
+    public List<RejectedRow> getRejectedRows() {
+        return rejectedRows;
+    }
+
+    /**
+     * A single row rejected by the database, along with the reason.
+     */
+    public static final class RejectedRow {
+
+        @NotNull
+        private final List<?> values;
+
+        @NotNull
+        private final SQLException cause;
+
+        RejectedRow(@NotNull List<?> values, @NotNull SQLException cause) {
+            this.values = unmodifiableList(new ArrayList<Object>(values));
+            this.cause = cause;
+        }
+
+        @NotNull
+        public List<?> getValues() {
+            return values;
+        }
+
+        /**
+         * Returns the exception produced by the database when inserting this row alone. The
+         * message of the exception typically names the violated constraint.
+         */
+        @NotNull
+        public SQLException getCause() {
+            return cause;
+        }
+
+        @Override
+        @NotNull
+        public String toString() {
+            return values + ": " + cause.getMessage();
+        }
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2012 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fi.evident.herdwick.dialects;
+
+import fi.evident.herdwick.generators.Row;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * Encodes rows as UTF-8 in the text format of PostgreSQL's {@code COPY}. Rows are
+ * accumulated into a single reusable buffer that can be written to the database
+ * whenever it grows large enough.
+ */
+final class CopyTextEncoder {
+
+    @NotNull
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes();
+
+    @NotNull
+    private byte[] buffer;
+
+    private int size = 0;
+
+    CopyTextEncoder(int initialCapacity) {
+        this.buffer = new byte[initialCapacity];
+    }
+
+    @NotNull
+    byte[] buffer() {
+        return buffer;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    void writeRow(@NotNull List<?> row) {
+        if (row instanceof Row) {
+            writeRow((Row) row);
+            return;
+        }
+
+        for (int i = 0, count = row.size(); i < count; i++) {
+            if (i != 0)
+                writeByte('\t');
+            writeValue(row.get(i));
+        }
+        writeByte('\n');
+    }
+
+    /**
+     * Writes the values of primitive columns of a generated row without boxing them.
+     */
+    private void writeRow(@NotNull Row row) {
+        for (int i = 0, count = row.size(); i < count; i++) {
+            if (i != 0)
+                writeByte('\t');
+
+            if (row.isNull(i)) {
+                writeValue(null);
+                continue;
+            }
+
+            switch (row.getType(i)) {
+                case INT:     writeLong(row.getInt(i)); break;
+                case LONG:    writeLong(row.getLong(i)); break;
+                case BOOLEAN: writeByte(row.getBoolean(i) ? 't' : 'f'); break;
+                case ASCII:   writeAscii(row.getAsciiBytes(i), row.getAsciiOffset(i), row.getAsciiLength(i)); break;
+                default:      writeValue(row.get(i));
+            }
+        }
+        writeByte('\n');
+    }
+
+    private void writeValue(@Nullable Object value) {
+        if (value == null) {
+            writeByte('\\');
+            writeByte('N');
+        } else if (value instanceof Boolean) {
+            writeByte((Boolean) value ? 't' : 'f');
+        } else if (value instanceof byte[]) {
+            writeBytea((byte[]) value);
+        } else {
+            writeEscaped(value.toString());
+        }
+    }
+
+    private void writeBytea(@NotNull byte[] bytes) {
+        // Hex-format of bytea, with the leading backslash escaped for COPY
+        ensureCapacity(3 + 2 * bytes.length);
+        buffer[size++] = '\\';
+        buffer[size++] = '\\';
+        buffer[size++] = 'x';
+        for (byte b : bytes) {
+            buffer[size++] = HEX_DIGITS[(b >> 4) & 0xF];
+            buffer[size++] = HEX_DIGITS[b & 0xF];
+        }
+    }
+
+    private void writeEscaped(@NotNull String s) {
+        // Every char produces at most 3 bytes of UTF-8 or 2 bytes of escaped ASCII.
+        ensureCapacity(3 * s.length());
+
+        for (int i = 0, length = s.length(); i < length; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                switch (c) {
+                    case '\\': buffer[size++] = '\\'; buffer[size++] = '\\'; break;
+                    case '\n': buffer[size++] = '\\'; buffer[size++] = 'n'; break;
+                    case '\r': buffer[size++] = '\\'; buffer[size++] = 'r'; break;
+                    case '\t': buffer[size++] = '\\'; buffer[size++] = 't'; break;
+                    default:   buffer[size++] = (byte) c;
+                }
+            } else if (c < 0x800) {
+                buffer[size++] = (byte) (0xC0 | (c >> 6));
+                buffer[size++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, s.charAt(++i));
+                buffer[size++] = (byte) (0xF0 | (codePoint >> 18));
+                buffer[size++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[size++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[size++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else {
+                buffer[size++] = (byte) (0xE0 | (c >> 12));
+                buffer[size++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[size++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    /**
+     * Copies ASCII bytes directly, escaping the special characters.
+     */
+    private void writeAscii(@NotNull byte[] bytes, int offset, int length) {
+        ensureCapacity(2 * length);
+
+        for (int i = offset, end = offset + length; i < end; i++) {
+            byte b = bytes[i];
+            switch (b) {
+                case '\\': buffer[size++] = '\\'; buffer[size++] = '\\'; break;
+                case '\n': buffer[size++] = '\\'; buffer[size++] = 'n'; break;
+                case '\r': buffer[size++] = '\\'; buffer[size++] = 'r'; break;
+                case '\t': buffer[size++] = '\\'; buffer[size++] = 't'; break;
+                default:   buffer[size++] = b;
+            }
+        }
+    }
+
+    private void writeLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            writeEscaped(Long.toString(value));
+            return;
+        }
+
+        ensureCapacity(20);
+        if (value < 0) {
+            buffer[size++] = '-';
+            value = -value;
+        }
+
+        // Write the digits in reverse order and then reverse them in place
+        int start = size;
+        do {
+            buffer[size++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+
+        for (int i = start, j = size - 1; i < j; i++, j--) {
+            byte b = buffer[i];
+            buffer[i] = buffer[j];
+            buffer[j] = b;
+        }
+    }
+
+    private void writeByte(char c) {
+        ensureCapacity(1);
+        buffer[size++] = (byte) c;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (size + extra > buffer.length) {
+            byte[] newBuffer = new byte[Math.max(2 * buffer.length, size + extra)];
+            System.arraycopy(buffer, 0, newBuffer, 0, size);
+            buffer = newBuffer;
+        }
+    }
+}
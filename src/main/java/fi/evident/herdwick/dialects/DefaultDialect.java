@@ -25,15 +25,19 @@ package fi.evident.herdwick.dialects;
 import fi.evident.herdwick.model.Column;
 import fi.evident.herdwick.model.Name;
 import fi.evident.herdwick.model.Table;
+import fi.evident.herdwick.model.UniqueConstraint;
 import org.jetbrains.annotations.NotNull;
 
+import java.sql.Connection;
+import java.sql.SQLException;
 import java.util.List;
 
 /**
  * A default implementation of {@link Dialect} that should be fine
- * for most databases.
+ * for most databases. Only standard statements are used, so features
+ * needing database specific statements are not supported.
  */
-public final class DefaultDialect extends Dialect {
+public class DefaultDialect extends Dialect {
 
     private final MetadataProvider metadataProvider = new JdbcMetadataProvider();
 
@@ -53,6 +57,33 @@ public final class DefaultDialect extends Dialect {
         return sql.toString();
     }
 
+    @NotNull
+    @Override
+    public String createMultiRowInsert(@NotNull Name table, @NotNull List<Column> columns, int rows) {
+        if (rows <= 0) throw new IllegalArgumentException("non-positive rows: " + rows);
+
+        SqlBuilder sql = new SqlBuilder();
+        sql.append("insert into ").appendName(table);
+        sql.append(" (").appendCommaSeparatorColumns(columns).append(") values ");
+        for (int i = 0; i < rows; i++) {
+            if (i != 0)
+                sql.append(',');
+            sql.append('(').appendCommaSeparatedPlaceholders(columns.size()).append(')');
+        }
+        return sql.toString();
+    }
+
+    @NotNull
+    @Override
+    public String selectRange(@NotNull Column column) {
+        SqlBuilder sql = new SqlBuilder();
+        sql.append("select min(").appendName(column.getName());
+        sql.append("), max(").appendName(column.getName());
+        sql.append("), count(").appendName(column.getName());
+        sql.append(") from ").appendName(column.getTable().getName());
+        return sql.toString();
+    }
+
     @NotNull
     @Override
     public String selectAll(@NotNull List<Column> columns, @NotNull Table table) {
@@ -61,64 +92,78 @@ public final class DefaultDialect extends Dialect {
         return sql.toString();
     }
 
-    private static final class SqlBuilder {
-
-        @NotNull
-        private final StringBuilder sql = new StringBuilder(100);
+    /**
+     * Temporary tables are created differently by each database, so verifying unique constraints
+     * in the database is not supported.
+     */
+    @NotNull
+    @Override
+    public Name getCandidateTableName() {
+        throw new UnsupportedOperationException("verifying unique constraints in the database is not supported by " + getClass().getSimpleName());
+    }
 
-        @Override
-        @NotNull
-        public String toString() {
-            return sql.toString();
-        }
+    @NotNull
+    @Override
+    public String createCandidateTable(@NotNull Name candidates, @NotNull List<Column> columns, @NotNull Table table) {
+        throw new UnsupportedOperationException("verifying unique constraints in the database is not supported by " + getClass().getSimpleName());
+    }
 
-        @NotNull
-        SqlBuilder append(@NotNull String s) {
-            sql.append(s);
-            return this;
+    @NotNull
+    @Override
+    public String createAntiJoinInsert(@NotNull Name candidates, @NotNull Table table, @NotNull List<Column> columns, @NotNull List<UniqueConstraint> constraints) {
+        SqlBuilder sql = new SqlBuilder();
+        sql.append("insert into ").appendName(table.getName());
+        sql.append(" (").appendCommaSeparatorColumns(columns);
+        sql.append(") select ").appendCommaSeparatorColumns(columns);
+        sql.append(" from ").appendName(candidates).append(" c");
+
+        for (int i = 0; i < constraints.size(); i++) {
+            sql.append(i == 0 ? " where" : " and");
+            sql.append(" not exists (select 1 from ").appendName(table.getName()).append(" t where ");
+            appendMatchCondition(sql, constraints.get(i));
+            sql.append(')');
         }
+        return sql.toString();
+    }
 
-        @NotNull
-        SqlBuilder append(char c) {
-            sql.append(c);
-            return this;
+    /**
+     * Appends a condition that matches rows {@code t} and {@code c} having equal values for the columns of given constraint.
+     */
+    protected static void appendMatchCondition(@NotNull SqlBuilder sql, @NotNull UniqueConstraint constraint) {
+        List<Column> columns = constraint.getColumns();
+        for (int i = 0; i < columns.size(); i++) {
+            if (i != 0)
+                sql.append(" and ");
+            String column = columns.get(i).getName();
+            sql.append("t.").appendName(column).append(" = c.").appendName(column);
         }
+    }
 
-        @NotNull
-        SqlBuilder appendCommaSeparatorColumns(@NotNull List<Column> columns) {
-            for (int i = 0, size = columns.size(); i < size; i++) {
-                if (i != 0)
-                    sql.append(',');
-                appendName(columns.get(i).getName());
-            }
-            return this;
-        }
+    @NotNull
+    @Override
+    public String createDropTable(@NotNull Name table) {
+        return new SqlBuilder().append("drop table ").appendName(table).toString();
+    }
 
-        @NotNull
-        SqlBuilder appendCommaSeparatedPlaceholders(int count) {
-            for (int i = 0; i < count; i++) {
-                if (i != 0)
-                    sql.append(',');
-                sql.append('?');
-            }
-            return this;
-        }
+    /**
+     * Skipping conflicting rows requires database specific statements, so this is supported only
+     * when there are no constraints to check.
+     */
+    @NotNull
+    @Override
+    public String createConflictIgnoringInsert(@NotNull Table table, @NotNull List<Column> columns, @NotNull List<UniqueConstraint> constraints, int rows) {
+        if (!constraints.isEmpty())
+            throw new UnsupportedOperationException("inserting rows ignoring conflicts is not supported by " + getClass().getSimpleName());
 
-        @NotNull
-        SqlBuilder appendName(@NotNull String name) {
-            sql.append('"').append(name).append('"');
-            return this;
-        }
+        return createMultiRowInsert(table.getName(), columns, rows);
+    }
 
-        @NotNull
-        SqlBuilder appendName(@NotNull Name tableName) {
-            String schema = tableName.getSchema();
-            if (schema != null) {
-                appendName(schema);
-                sql.append('.');
-            }
-            appendName(tableName.getName());
-            return this;
-        }
+    /**
+     * Sequences and identities are adjusted differently by each database, so preallocating keys
+     * is not supported.
+     */
+    @Override
+    public long reserveKeys(@NotNull Connection connection, @NotNull Column column, int count) throws SQLException {
+        throw new UnsupportedOperationException("preallocating keys is not supported by " + getClass().getSimpleName());
     }
 }
@@ -24,18 +24,40 @@ package fi.evident.herdwick.dialects;
 
 import fi.evident.dalesbred.Database;
 import fi.evident.dalesbred.SQL;
+import fi.evident.dalesbred.TransactionCallback;
+import fi.evident.dalesbred.TransactionContext;
+import fi.evident.herdwick.generators.Row;
 import fi.evident.herdwick.model.Column;
 import fi.evident.herdwick.model.Name;
 import fi.evident.herdwick.model.Table;
+import fi.evident.herdwick.model.UniqueConstraint;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
 
 /**
- * Generates SQL statements that populator needs.
+ * Generates SQL statements that populator needs and inserts rows
+ * in the way that is most efficient for the database.
  */
 public abstract class Dialect {
 
+    private static final int DEFAULT_MAX_PARAMETERS = 2000;
+
+    private int rowsPerStatement = 100;
+
     @SQL
     @NotNull
     public abstract String createInsert(@NotNull Name table, @NotNull List<Column> columns);
@@ -44,12 +66,369 @@ public abstract class Dialect {
     @NotNull
     public abstract String selectAll(@NotNull List<Column> columns, @NotNull Table table);
 
+    /**
+     * Returns a query that selects the minimum, maximum and the amount of non-null values of given column.
+     */
+    @SQL
+    @NotNull
+    public abstract String selectRange(@NotNull Column column);
+
+    /**
+     * Returns a query that selects a random sample of at most {@code size} rows of given table
+     * without reading the whole table, or {@code null} if the database does not support such
+     * queries. In that case the caller will sample the rows itself. The default implementation
+     * returns {@code null}.
+     */
+    @SQL
+    @Nullable
+    @SuppressWarnings("UnusedParameters")
+    public String selectSample(@NotNull Connection connection, @NotNull List<Column> columns, @NotNull Table table, int size) throws SQLException {
+        return null;
+    }
+
     @NotNull
     public abstract MetadataProvider getMetadataProvider();
 
+    /**
+     * Creates an insert statement that inserts {@code rows} rows at once.
+     */
+    @SQL
+    @NotNull
+    public abstract String createMultiRowInsert(@NotNull Name table, @NotNull List<Column> columns, int rows);
+
+    /**
+     * Returns the maximum amount of parameters that a single statement may have.
+     */
+    protected int getMaxParameters() {
+        return DEFAULT_MAX_PARAMETERS;
+    }
+
+    /**
+     * Returns the maximum amount of rows inserted by a single insert statement.
+     *
+     * @see #setRowsPerStatement(int)
+     */
+    public int getRowsPerStatement() {
+        return rowsPerStatement;
+    }
+
+    /**
+     * Sets the maximum amount of rows inserted by a single insert statement. The amount will be
+     * further limited so that the statement does not exceed the maximum amount of parameters
+     * supported by the database. Value 1 means that each row is inserted by a statement of its own.
+     */
+    public void setRowsPerStatement(int rowsPerStatement) {
+        if (rowsPerStatement <= 0) throw new IllegalArgumentException("non-positive rows-per-statement: " + rowsPerStatement);
+
+        this.rowsPerStatement = rowsPerStatement;
+    }
+
+    /**
+     * Inserts given rows to table using given connection. The default implementation executes a
+     * JDBC batch of statements produced by {@link #createMultiRowInsert(Name, List, int)}, each
+     * inserting at most {@link #getRowsPerStatement()} rows.
+     *
+     * @return amount of inserted rows
+     */
+    public int insertRows(@NotNull Connection connection, @NotNull final Name table, @NotNull final List<Column> columns, @NotNull List<? extends List<?>> rows) throws SQLException {
+        executeInGroups(connection, columns, rows, rowsPerStatement, new StatementFactory() {
+            @NotNull
+            @Override
+            public String createStatement(int rows) {
+                return rows == 1 ? createInsert(table, columns) : createMultiRowInsert(table, columns, rows);
+            }
+        });
+
+        return rows.size();
+    }
+
+    /**
+     * Inserts given rows to table and returns the values that the database generated for
+     * {@code keyColumn}, in the order of the rows. Each statement inserts at most
+     * {@link #getRowsPerStatement()} rows, but the statements are executed one at a time,
+     * since not all drivers return generated keys for batches.
+     *
+     * @return generated keys
+     */
+    @NotNull
+    public long[] insertRowsReturningKeys(@NotNull Connection connection, @NotNull Name table, @NotNull List<Column> columns,
+                                          @NotNull List<? extends List<?>> rows, @NotNull Column keyColumn) throws SQLException {
+        int rowsPerStatement = rowsPerStatement(this.rowsPerStatement, columns.size());
+        String[] keyColumns = { keyColumn.getName() };
+        long[] keys = new long[rows.size()];
+        int keyCount = 0;
+
+        Map<Integer, PreparedStatement> statements = new HashMap<Integer, PreparedStatement>(4);
+        try {
+            for (int offset = 0, total = rows.size(); offset < total; offset += rowsPerStatement) {
+                int count = min(rowsPerStatement, total - offset);
+
+                PreparedStatement ps = statements.get(count);
+                if (ps == null) {
+                    ps = connection.prepareStatement(count == 1 ? createInsert(table, columns) : createMultiRowInsert(table, columns, count), keyColumns);
+                    statements.put(count, ps);
+                }
+
+                for (int i = 0; i < count; i++)
+                    bindRow(ps, i * columns.size(), columns, rows.get(offset + i));
+                ps.executeUpdate();
+
+                ResultSet rs = ps.getGeneratedKeys();
+                try {
+                    while (rs.next() && keyCount < keys.length)
+                        keys[keyCount++] = rs.getLong(1);
+                } finally {
+                    rs.close();
+                }
+            }
+
+            if (keyCount != keys.length)
+                throw new SQLException("expected " + keys.length + " generated keys, but got " + keyCount);
+
+            return keys;
+
+        } finally {
+            for (PreparedStatement ps : statements.values())
+                ps.close();
+        }
+    }
+
+    /**
+     * Reserves {@code count} consecutive values of given auto-increment column, so that the database
+     * will not generate them for inserted rows. The reserved values are also greater than any existing
+     * value of the column.
+     *
+     * @return the first reserved value
+     */
+    public abstract long reserveKeys(@NotNull Connection connection, @NotNull Column column, int count) throws SQLException;
+
+    /**
+     * Creates a statement that inserts {@code rows} rows at once, skipping the rows that would
+     * violate any of given unique constraints.
+     *
+     * @see #getMaxRowsPerConflictIgnoringInsert()
+     */
+    @SQL
+    @NotNull
+    public abstract String createConflictIgnoringInsert(@NotNull Table table, @NotNull List<Column> columns, @NotNull List<UniqueConstraint> constraints, int rows);
+
+    /**
+     * Returns the maximum amount of rows that {@link #createConflictIgnoringInsert(Table, List, List, int)}
+     * can insert with a single statement. Some databases skip only rows that conflict with existing rows,
+     * but fail on rows conflicting with each other, in which case each row needs a statement of its own.
+     * The default implementation returns 1.
+     */
+    protected int getMaxRowsPerConflictIgnoringInsert() {
+        return 1;
+    }
+
+    /**
+     * Inserts given rows to table, skipping rows that would violate any of given unique constraints
+     * because of existing rows or rows inserted by the same call.
+     *
+     * @return amount of rows actually inserted
+     */
+    public int insertRowsIgnoringConflicts(@NotNull Connection connection, @NotNull final Table table, @NotNull final List<Column> columns,
+                                           @NotNull final List<UniqueConstraint> constraints, @NotNull List<? extends List<?>> rows) throws SQLException {
+        int maxRows = min(rowsPerStatement, getMaxRowsPerConflictIgnoringInsert());
+
+        int inserted = executeInGroups(connection, columns, rows, maxRows, new StatementFactory() {
+            @NotNull
+            @Override
+            public String createStatement(int rows) {
+                return createConflictIgnoringInsert(table, columns, constraints, rows);
+            }
+        });
+
+        if (inserted < 0) throw new SQLException("driver did not report the amount of inserted rows");
+        return inserted;
+    }
+
+    /**
+     * Binds given rows to statements, each of which handles at most {@code maxRowsPerStatement} rows,
+     * and executes them as a JDBC batch. The amount of rows per statement is further limited by the
+     * amount of parameters that the database supports.
+     *
+     * @return total update count of the statements, or -1 if the driver did not report all the counts
+     */
+    private int executeInGroups(@NotNull Connection connection, @NotNull List<Column> columns, @NotNull List<? extends List<?>> rows,
+                                  int maxRowsPerStatement, @NotNull StatementFactory statementFactory) throws SQLException {
+        int rowsPerStatement = rowsPerStatement(maxRowsPerStatement, columns.size());
+
+        // There are at most two different statements: one for full groups of rows and one for the rest.
+        // They are executed in the order they were created, so that the rows are inserted in order.
+        Map<Integer, PreparedStatement> statements = new LinkedHashMap<Integer, PreparedStatement>(4);
+        try {
+            for (int offset = 0, total = rows.size(); offset < total; offset += rowsPerStatement) {
+                int count = min(rowsPerStatement, total - offset);
+
+                PreparedStatement ps = statements.get(count);
+                if (ps == null) {
+                    ps = connection.prepareStatement(statementFactory.createStatement(count));
+                    statements.put(count, ps);
+                }
+
+                for (int i = 0; i < count; i++)
+                    bindRow(ps, i * columns.size(), columns, rows.get(offset + i));
+                ps.addBatch();
+            }
+
+            int total = 0;
+            for (PreparedStatement ps : statements.values()) {
+                for (int count : ps.executeBatch()) {
+                    if (count < 0)
+                        total = -1;
+                    else if (total >= 0)
+                        total += count;
+                }
+            }
+            return total;
+
+        } finally {
+            for (PreparedStatement ps : statements.values())
+                ps.close();
+        }
+    }
+
+    /**
+     * Limits the amount of rows per statement so that the statement does not have too many parameters.
+     */
+    private int rowsPerStatement(int maxRowsPerStatement, int columnCount) {
+        return max(1, min(maxRowsPerStatement, getMaxParameters() / columnCount));
+    }
+
+    private interface StatementFactory {
+        @SQL
+        @NotNull
+        String createStatement(int rows);
+    }
+
+    /**
+     * Returns the name of the temporary table used for verifying candidate rows in the database.
+     */
+    @NotNull
+    public abstract Name getCandidateTableName();
+
+    /**
+     * Creates a statement that creates an empty temporary table for given columns of given table.
+     */
+    @SQL
+    @NotNull
+    public abstract String createCandidateTable(@NotNull Name candidates, @NotNull List<Column> columns, @NotNull Table table);
+
+    /**
+     * Creates a statement that copies the rows of table {@code candidates} to {@code table}, except the
+     * ones that would violate any of given unique constraints because of rows already in {@code table}.
+     */
+    @SQL
+    @NotNull
+    public abstract String createAntiJoinInsert(@NotNull Name candidates, @NotNull Table table, @NotNull List<Column> columns, @NotNull List<UniqueConstraint> constraints);
+
+    @SQL
+    @NotNull
+    public abstract String createDropTable(@NotNull Name table);
+
+    /**
+     * Inserts those of given rows that don't conflict with the existing rows of the table on any of
+     * given unique constraints. The rows are first inserted into a temporary table, from which they are
+     * copied into the target table with a single anti-join, so that the database can use its own indices
+     * for verifying the constraints. The given rows must not conflict with each other.
+     *
+     * @return amount of rows actually inserted
+     */
+    public int insertNonConflictingRows(@NotNull Connection connection, @NotNull Table table, @NotNull List<Column> columns,
+                                        @NotNull List<UniqueConstraint> constraints, @NotNull List<? extends List<?>> rows) throws SQLException {
+        Name candidates = getCandidateTableName();
+
+        execute(connection, createCandidateTable(candidates, columns, table));
+
+        int inserted;
+        try {
+            insertRows(connection, candidates, columns, rows);
+            inserted = execute(connection, createAntiJoinInsert(candidates, table, columns, constraints));
+        } catch (SQLException e) {
+            try {
+                execute(connection, createDropTable(candidates));
+            } catch (SQLException ignored) {
+                // The transaction might have been aborted, but the original exception is the interesting one
+            }
+            throw e;
+        }
+
+        execute(connection, createDropTable(candidates));
+        return inserted;
+    }
+
+    private static int execute(@NotNull Connection connection, @SQL @NotNull String sql) throws SQLException {
+        Statement statement = connection.createStatement();
+        try {
+            return statement.executeUpdate(sql);
+        } finally {
+            statement.close();
+        }
+    }
+
+    protected static void bindRow(@NotNull PreparedStatement ps, int parameterOffset, @NotNull List<Column> columns, @NotNull List<?> row) throws SQLException {
+        if (row instanceof Row) {
+            bindRow(ps, parameterOffset, columns, (Row) row);
+            return;
+        }
+
+        for (int i = 0, size = columns.size(); i < size; i++) {
+            Object value = row.get(i);
+            if (value != null)
+                ps.setObject(parameterOffset + i + 1, value);
+            else
+                ps.setNull(parameterOffset + i + 1, columns.get(i).getDataType());
+        }
+    }
+
+    /**
+     * Binds the values of primitive columns of a generated row without boxing them.
+     */
+    private static void bindRow(@NotNull PreparedStatement ps, int parameterOffset, @NotNull List<Column> columns, @NotNull Row row) throws SQLException {
+        for (int i = 0, size = columns.size(); i < size; i++) {
+            int parameter = parameterOffset + i + 1;
+            if (row.isNull(i)) {
+                ps.setNull(parameter, columns.get(i).getDataType());
+                continue;
+            }
+
+            switch (row.getType(i)) {
+                case INT:     ps.setInt(parameter, row.getInt(i)); break;
+                case LONG:    ps.setLong(parameter, row.getLong(i)); break;
+                case DOUBLE:  ps.setDouble(parameter, row.getDouble(i)); break;
+                case BOOLEAN: ps.setBoolean(parameter, row.getBoolean(i)); break;
+                case ASCII:   ps.setString(parameter, (String) row.get(i)); break;
+                default:      ps.setObject(parameter, row.get(i));
+            }
+        }
+    }
+
+    /**
+     * Returns the dialect best suited for given database.
+     */
     @NotNull
-    @SuppressWarnings("UnusedParameters")
     public static Dialect detect(@NotNull Database db) {
-        return new DefaultDialect();
+        return db.withTransaction(new TransactionCallback<Dialect>() {
+            @Override
+            public Dialect execute(@NotNull TransactionContext tx) throws SQLException {
+                return detect(tx.getConnection().getMetaData());
+            }
+        });
+    }
+
+    /**
+     * Returns the dialect best suited for the database described by given metadata.
+     */
+    @NotNull
+    static Dialect detect(@NotNull DatabaseMetaData metaData) throws SQLException {
+        String productName = metaData.getDatabaseProductName();
+        if ("PostgreSQL".equals(productName))
+            return new PostgreSQLDialect();
+        else if ("HSQL Database Engine".equals(productName))
+            return new HSQLDBDialect();
+        else
+            return new DefaultDialect();
     }
 }
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2012 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fi.evident.herdwick.dialects;
+
+import fi.evident.herdwick.model.Column;
+import fi.evident.herdwick.model.Name;
+import fi.evident.herdwick.model.Table;
+import fi.evident.herdwick.model.UniqueConstraint;
+import org.jetbrains.annotations.NotNull;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Dialect for HSQLDB.
+ */
+public class HSQLDBDialect extends DefaultDialect {
+
+    /**
+     * Temporary tables are declared in the schema {@code SESSION}.
+     */
+    @NotNull
+    @Override
+    public Name getCandidateTableName() {
+        return new Name("SESSION", "herdwick_candidates");
+    }
+
+    @NotNull
+    @Override
+    public String createCandidateTable(@NotNull Name candidates, @NotNull List<Column> columns, @NotNull Table table) {
+        SqlBuilder sql = new SqlBuilder();
+        sql.append("declare local temporary table ").appendName(candidates.getName());
+        sql.append(" as (").append(selectAll(columns, table)).append(") with no data");
+        return sql.toString();
+    }
+
+    /**
+     * Creates a {@code MERGE} statement that inserts the rows not matching existing rows on any of the constraints.
+     */
+    @NotNull
+    @Override
+    public String createConflictIgnoringInsert(@NotNull Table table, @NotNull List<Column> columns, @NotNull List<UniqueConstraint> constraints, int rows) {
+        if (rows <= 0) throw new IllegalArgumentException("non-positive rows: " + rows);
+        if (constraints.isEmpty())
+            return createMultiRowInsert(table.getName(), columns, rows);
+
+        SqlBuilder sql = new SqlBuilder();
+        sql.append("merge into ").appendName(table.getName()).append(" t using (values ");
+        for (int i = 0; i < rows; i++) {
+            if (i != 0)
+                sql.append(',');
+            sql.append('(').appendCommaSeparatedPlaceholders(columns.size()).append(')');
+        }
+        sql.append(") as c (").appendCommaSeparatorColumns(columns).append(") on ");
+
+        for (int i = 0; i < constraints.size(); i++) {
+            if (i != 0)
+                sql.append(" or ");
+            sql.append('(');
+            appendMatchCondition(sql, constraints.get(i));
+            sql.append(')');
+        }
+
+        sql.append(" when not matched then insert (").appendCommaSeparatorColumns(columns).append(") values (");
+        for (int i = 0; i < columns.size(); i++) {
+            if (i != 0)
+                sql.append(',');
+            sql.append("c.").appendName(columns.get(i).getName());
+        }
+        sql.append(')');
+        return sql.toString();
+    }
+
+    /**
+     * Reserves the keys after the greatest existing value of the column. HSQLDB advances the identity
+     * of a column past the values inserted explicitly, so the database won't generate the reserved
+     * values after they have been inserted. Restarting the identity right away would be safer against
+     * other sessions, but altering the table commits the current transaction, so it is done only in
+     * auto-commit mode, where there is no transaction of the caller to commit.
+     */
+    @Override
+    public long reserveKeys(@NotNull Connection connection, @NotNull Column column, int count) throws SQLException {
+        if (count <= 0) throw new IllegalArgumentException("non-positive count: " + count);
+
+        SqlBuilder query = new SqlBuilder();
+        query.append("select coalesce(max(").appendName(column.getName()).append("), 0) + 1 from ").appendName(column.getTable().getName());
+
+        Statement statement = connection.createStatement();
+        try {
+            ResultSet rs = statement.executeQuery(query.toString());
+            long firstKey;
+            try {
+                rs.next();
+                firstKey = rs.getLong(1);
+            } finally {
+                rs.close();
+            }
+
+            if (connection.getAutoCommit()) {
+                SqlBuilder alter = new SqlBuilder();
+                alter.append("alter table ").appendName(column.getTable().getName());
+                alter.append(" alter column ").appendName(column.getName());
+                alter.append(" restart with ").append(String.valueOf(firstKey + count));
+                statement.executeUpdate(alter.toString());
+            }
+
+            return firstKey;
+        } finally {
+            statement.close();
+        }
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2012 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fi.evident.herdwick.dialects;
+
+import fi.evident.herdwick.model.Column;
+import fi.evident.herdwick.model.Name;
+import fi.evident.herdwick.model.Table;
+import fi.evident.herdwick.model.UniqueConstraint;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Dialect for PostgreSQL. Rows are inserted using {@code COPY FROM STDIN}, which is
+ * considerably faster than executing batches of inserts.
+ */
+public class PostgreSQLDialect extends DefaultDialect {
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The protocol uses 16-bit integers for the amount of parameters.
+     */
+    private static final int MAX_PARAMETERS = 32767;
+
+    @Override
+    protected int getMaxParameters() {
+        return MAX_PARAMETERS;
+    }
+
+    /**
+     * Creates an {@code INSERT ... ON CONFLICT DO NOTHING} statement, which requires PostgreSQL 9.5.
+     */
+    @NotNull
+    @Override
+    public String createConflictIgnoringInsert(@NotNull Table table, @NotNull List<Column> columns, @NotNull List<UniqueConstraint> constraints, int rows) {
+        return createMultiRowInsert(table.getName(), columns, rows) + " on conflict do nothing";
+    }
+
+    /**
+     * Unlike {@code MERGE}, {@code ON CONFLICT} also skips rows that conflict with earlier rows of the same statement.
+     */
+    @Override
+    protected int getMaxRowsPerConflictIgnoringInsert() {
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * Advances the sequence backing the column past the block. Unlike {@code nextval}, this is not
+     * atomic with respect to other sessions using the sequence at the same time.
+     */
+    @Override
+    public long reserveKeys(@NotNull Connection connection, @NotNull Column column, int count) throws SQLException {
+        if (count <= 0) throw new IllegalArgumentException("non-positive count: " + count);
+
+        // pg_get_serial_sequence expects a table name that is quoted like in SQL, but a raw column name
+        String tableName = new SqlBuilder().appendName(column.getTable().getName()).toString();
+
+        SqlBuilder sql = new SqlBuilder();
+        sql.append("select setval(s.seq, greatest(nextval(s.seq), (select coalesce(max(").appendName(column.getName());
+        sql.append("), 0) + 1 from ").appendName(column.getTable().getName()).append(")) + ? - 1)");
+        sql.append(" from (select pg_get_serial_sequence(?, ?)::regclass as seq) s");
+
+        PreparedStatement ps = connection.prepareStatement(sql.toString());
+        try {
+            ps.setInt(1, count);
+            ps.setString(2, tableName);
+            ps.setString(3, column.getName());
+
+            ResultSet rs = ps.executeQuery();
+            try {
+                if (!rs.next() || rs.getObject(1) == null)
+                    throw new SQLException("could not find the sequence of " + column);
+                return rs.getLong(1) - count + 1;
+            } finally {
+                rs.close();
+            }
+        } finally {
+            ps.close();
+        }
+    }
+
+    /**
+     * Temporary tables live in a schema of their own, which is searched first.
+     */
+    @NotNull
+    @Override
+    public Name getCandidateTableName() {
+        return new Name(null, "herdwick_candidates");
+    }
+
+    @NotNull
+    @Override
+    public String createCandidateTable(@NotNull Name candidates, @NotNull List<Column> columns, @NotNull Table table) {
+        SqlBuilder sql = new SqlBuilder();
+        sql.append("create temporary table ").appendName(candidates);
+        sql.append(" as ").append(selectAll(columns, table)).append(" with no data");
+        return sql.toString();
+    }
+
+    @Override
+    public int insertRows(@NotNull Connection connection, @NotNull Name table, @NotNull List<Column> columns, @NotNull List<? extends List<?>> rows) throws SQLException {
+        // If we get a connection from a pool that does not support unwrapping, fall back to normal inserts
+        PGConnection pgConnection = pgConnectionFor(connection);
+        if (pgConnection == null)
+            return super.insertRows(connection, table, columns, rows);
+
+        CopyIn copyIn = pgConnection.getCopyAPI().copyIn(createCopy(table, columns));
+        try {
+            CopyTextEncoder encoder = new CopyTextEncoder(COPY_BUFFER_SIZE);
+
+            for (List<?> row : rows) {
+                encoder.writeRow(row);
+                if (encoder.size() >= COPY_BUFFER_SIZE) {
+                    copyIn.writeToCopy(encoder.buffer(), 0, encoder.size());
+                    encoder.clear();
+                }
+            }
+
+            if (encoder.size() != 0)
+                copyIn.writeToCopy(encoder.buffer(), 0, encoder.size());
+
+            return (int) copyIn.endCopy();
+
+        } finally {
+            if (copyIn.isActive())
+                copyIn.cancelCopy();
+        }
+    }
+
+    /**
+     * Returns the driver's own connection behind given connection, or {@code null} if it can't be accessed.
+     * Older drivers throw from {@link Connection#isWrapperFor(Class)} and {@link Connection#unwrap(Class)},
+     * so the connection is first checked directly.
+     */
+    @Nullable
+    private static PGConnection pgConnectionFor(@NotNull Connection connection) {
+        if (connection instanceof PGConnection)
+            return (PGConnection) connection;
+
+        try {
+            if (connection.isWrapperFor(PGConnection.class))
+                return connection.unwrap(PGConnection.class);
+        } catch (SQLException e) {
+            // unwrapping is not supported
+        }
+        return null;
+    }
+
+    /**
+     * On PostgreSQL 9.5 and later, uses {@code TABLESAMPLE SYSTEM} to read only a fraction of
+     * the table's pages. The fraction is based on the planner's estimate of the size of the table
+     * and is doubled to make it likely that enough rows are sampled.
+     */
+    @Nullable
+    @Override
+    public String selectSample(@NotNull Connection connection, @NotNull List<Column> columns, @NotNull Table table, int size) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        if (metaData.getDatabaseMajorVersion() * 100 + metaData.getDatabaseMinorVersion() < 905)
+            return null;
+
+        double estimatedRows = estimateRowCount(connection, table.getName());
+        if (estimatedRows <= 2.0 * size)
+            return null;
+
+        double percentage = 100.0 * 2.0 * size / estimatedRows;
+
+        SqlBuilder sql = new SqlBuilder();
+        sql.append("select ").appendCommaSeparatorColumns(columns).append(" from ").appendName(table.getName());
+        sql.append(String.format(Locale.ROOT, " tablesample system (%.6f) limit %d", percentage, size));
+        return sql.toString();
+    }
+
+    private static double estimateRowCount(@NotNull Connection connection, @NotNull Name table) throws SQLException {
+        SqlBuilder name = new SqlBuilder().appendName(table);
+
+        PreparedStatement ps = connection.prepareStatement("select reltuples from pg_class where oid = ?::regclass");
+        try {
+            ps.setString(1, name.toString());
+
+            ResultSet rs = ps.executeQuery();
+            try {
+                return rs.next() ? rs.getDouble(1) : 0;
+            } finally {
+                rs.close();
+            }
+        } finally {
+            ps.close();
+        }
+    }
+
+    @NotNull
+    private static String createCopy(@NotNull Name table, @NotNull List<Column> columns) {
+        SqlBuilder sql = new SqlBuilder();
+        sql.append("copy ").appendName(table);
+        sql.append(" (").appendCommaSeparatorColumns(columns);
+        sql.append(") from stdin");
+        return sql.toString();
+    }
+}
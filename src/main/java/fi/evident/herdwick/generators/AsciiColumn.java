@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2012 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fi.evident.herdwick.generators;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Values of a column of ASCII strings in a {@link Chunk}. The characters of all the values are
+ * stored as bytes in a single buffer, and each row refers to a range of the buffer. The buffer
+ * only grows: slots that are overwritten leave their old bytes unused.
+ */
+final class AsciiColumn {
+
+    @NotNull
+    private byte[] bytes;
+
+    private int used = 0;
+
+    @NotNull
+    private final int[] offsets;
+
+    @NotNull
+    private final int[] lengths;
+
+    AsciiColumn(int capacity) {
+        this.bytes = new byte[Math.max(16, 8 * capacity)];
+        this.offsets = new int[capacity];
+        this.lengths = new int[capacity];
+    }
+
+    /**
+     * Allocates {@code length} bytes for the value of given row and returns their offset
+     * in the buffer returned by {@link #getBytes()} after the call.
+     */
+    int allocate(int row, int length) {
+        if (used + length > bytes.length) {
+            byte[] newBytes = new byte[Math.max(2 * bytes.length, used + length)];
+            System.arraycopy(bytes, 0, newBytes, 0, used);
+            bytes = newBytes;
+        }
+
+        int offset = used;
+        offsets[row] = offset;
+        lengths[row] = length;
+        used += length;
+        return offset;
+    }
+
+    /**
+     * Stores given string, returning false if it is not ASCII.
+     */
+    @SuppressWarnings("deprecation")
+    boolean set(int row, @NotNull String value) {
+        for (int i = 0, length = value.length(); i < length; i++)
+            if (value.charAt(i) >= 0x80)
+                return false;
+
+        int offset = allocate(row, value.length());
+        value.getBytes(0, value.length(), bytes, offset);
+        return true;
+    }
+
+    /**
+     * Makes row {@code to} refer to the value of row {@code from}.
+     */
+    void move(int from, int to) {
+        offsets[to] = offsets[from];
+        lengths[to] = lengths[from];
+    }
+
+    @NotNull
+    @SuppressWarnings("deprecation")
+    String get(int row) {
+        // The bytes are ASCII, so they can be used as the low bytes of chars without decoding
+        return new String(bytes, 0, offsets[row], lengths[row]);
+    }
+
+    @NotNull
+    byte[] getBytes() {
+        return bytes;
+    }
+
+    int getOffset(int row) {
+        return offsets[row];
+    }
+
+    int getLength(int row) {
+        return lengths[row];
+    }
+}
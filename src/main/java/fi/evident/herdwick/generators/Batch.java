@@ -22,95 +22,251 @@
 
 package fi.evident.herdwick.generators;
 
-import fi.evident.dalesbred.ResultTable;
 import fi.evident.herdwick.model.Column;
 import fi.evident.herdwick.model.Table;
+import fi.evident.herdwick.model.UniqueConstraint;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayList;
+import java.sql.Types;
 import java.util.List;
 
-import static fi.evident.herdwick.generators.UniqueConstraintVerifier.createUniqueConstraintVerifiers;
-import static java.util.Collections.unmodifiableList;
+import static fi.evident.herdwick.generators.UniqueConstraintVerifier.addToAll;
+import static fi.evident.herdwick.generators.UniqueConstraintVerifier.satisfiesAll;
 
 /**
- * Represents a single batch of data to be generated for insertion into database.
+ * Represents the state of generating data for a single populate-call. The rows
+ * themselves are produced and inserted in chunks, but the batch keeps track of
+ * their uniqueness over all the chunks. Batches are thread-safe so that multiple
+ * threads may generate rows for the same batch.
  */
 public final class Batch {
 
     @NotNull
-    private final Table table;
-
-    @NotNull
-    private final List<List<?>> existingRows;
+    private final TablePlan plan;
 
     @NotNull
-    private final List<List<?>> rowsToInsert = new ArrayList<List<?>>();
+    private final Table table;
 
     @NotNull
     private final List<Column> columns;
+
+    /**
+     * The auto-increment column whose values are assigned by the batch, if any.
+     */
+    @Nullable
+    private final Column preallocatedKeyColumn;
+
+    private long nextKey = 0;
+    private long keyLimit = 0;
+
     private final int requestedSize;
+    private int currentSize = 0;
+    private int discardedRows = 0;
+    private boolean shortfallReported = false;
+
+    /**
+     * Lock held while generating a chunk when chunks must be generated one at a time.
+     */
+    @NotNull
+    private final Object generationLock = new Object();
 
     @NotNull
     private final List<UniqueConstraintVerifier> uniqueConstraintVerifiers;
 
-    public Batch(@NotNull Table table, @NotNull ResultTable existingData, int requestedSize) {
-        this.table = table;
-        this.existingRows = resultTableToList(existingData);
-        this.requestedSize = requestedSize;
-        this.columns = table.getNonAutoIncrementColumns();
-        this.uniqueConstraintVerifiers = createUniqueConstraintVerifiers(table, columns);
-    }
+    @Nullable
+    private RowGenerator rowGenerator;
 
-    @NotNull
-    public List<? extends List<?>> rowsToInsert() {
-        return rowsToInsert;
+    /**
+     * Constructs a new batch using given plan. If the plan has been compiled, its generators are used.
+     * If keys are preallocated, the values of the preallocated key column are assigned from the block
+     * reserved with {@link #reserveKeys(long)} as rows are accepted.
+     */
+    public Batch(@NotNull TablePlan plan, int requestedSize) {
+        this.plan = plan;
+        this.table = plan.getTable();
+        this.columns = plan.getColumns();
+        this.preallocatedKeyColumn = plan.getPreallocatedKeyColumn();
+        this.requestedSize = requestedSize;
+        this.uniqueConstraintVerifiers = plan.createVerifiers();
+        this.rowGenerator = plan.getRowGenerator();
     }
 
-    public boolean addRow(@NotNull List<?> row) {
-        if (satisfiesUniqueConstraints(row)) {
-            rowsToInsert.add(row);
+    /**
+     * Adds a new row to the batch if it satisfies all unique constraints. Otherwise
+     * the row is counted as discarded. Rows are never added to a batch that is ready.
+     *
+     * @return true if row was added
+     */
+    public synchronized boolean addRow(@NotNull List<?> row) {
+        if (isReady()) {
+            return false;
+        } else if (satisfiesAll(uniqueConstraintVerifiers, row)) {
+            addToAll(uniqueConstraintVerifiers, row);
+            currentSize++;
             return true;
         } else {
+            discardedRows++;
             return false;
         }
     }
 
-    private boolean satisfiesUniqueConstraints(@NotNull List<?> row) {
+    /**
+     * Registers the keys of a row already present in the database, so that generated rows will
+     * not conflict with it. The row should contain values for {@link #getKeyColumns()}.
+     */
+    public synchronized void addExistingRow(@NotNull List<?> keyRow) {
         for (UniqueConstraintVerifier verifier : uniqueConstraintVerifiers)
-            if (!verifier.satisfies(existingRows, rowsToInsert, row))
-                return false;
+            verifier.addExisting(keyRow);
+    }
 
-        return true;
+    /**
+     * Sets the block of keys reserved for this batch to contain {@link #getRequestedSize()}
+     * consecutive values starting from {@code firstKey}.
+     */
+    synchronized void reserveKeys(long firstKey) {
+        if (preallocatedKeyColumn == null) throw new IllegalStateException("keys are not preallocated for " + table.getName());
+
+        nextKey = firstKey;
+        keyLimit = firstKey + requestedSize;
     }
 
+    /**
+     * Assigns the next preallocated key to an accepted row.
+     */
+    synchronized void assignKey(@NotNull Row row) {
+        if (preallocatedKeyColumn == null) throw new IllegalStateException("keys are not preallocated for " + table.getName());
+        if (nextKey >= keyLimit) throw new IllegalStateException("all reserved keys of " + table.getName() + " have been used");
+
+        long key = nextKey++;
+        if (preallocatedKeyColumn.getDataType() == Types.BIGINT)
+            row.setLong(columns.size() - 1, key);
+        else
+            row.setInt(columns.size() - 1, (int) key);
+    }
+
+    /**
+     * Returns the auto-increment column whose values are assigned by this batch, or {@code null} if
+     * the database generates the values.
+     */
+    @Nullable
+    public Column getPreallocatedKeyColumn() {
+        return preallocatedKeyColumn;
+    }
+
+    /**
+     * Returns the preallocated keys of given rows of this batch.
+     */
     @NotNull
-    private static List<List<?>> resultTableToList(@NotNull ResultTable table) {
-        List<List<?>> result = new ArrayList<List<?>>(table.getRowCount());
-        for (ResultTable.ResultRow row : table.getRows())
-            result.add(row.asList());
-        return result;
+    public long[] getPreallocatedKeys(@NotNull List<? extends List<?>> rows) {
+        if (preallocatedKeyColumn == null) throw new IllegalStateException("keys are not preallocated for " + table.getName());
+
+        int index = columns.size() - 1;
+        long[] keys = new long[rows.size()];
+        for (int i = 0; i < keys.length; i++)
+            keys[i] = ((Number) rows.get(i).get(index)).longValue();
+        return keys;
+    }
+
+    /**
+     * Counts a row that was rejected before it was offered to the batch as discarded.
+     */
+    synchronized void discardRow() {
+        discardedRows++;
+    }
+
+    /**
+     * Removes rows that were added to the batch, but were then rejected by the database,
+     * and counts them as discarded.
+     *
+     * @see UniqueVerification#DATABASE
+     * @see UniqueVerification#OPTIMISTIC
+     */
+    public synchronized void rejectRows(int count) {
+        if (count < 0 || count > currentSize) throw new IllegalArgumentException("invalid count: " + count);
+
+        currentSize -= count;
+        discardedRows += count;
     }
 
     public int getRequestedSize() {
         return requestedSize;
     }
 
-    public int getCurrentSize() {
-        return rowsToInsert.size();
+    public synchronized int getCurrentSize() {
+        return currentSize;
+    }
+
+    public synchronized int getRemainingSize() {
+        return requestedSize - currentSize;
     }
 
-    public boolean isReady() {
-        return rowsToInsert.size() >= requestedSize;
+    public synchronized int getDiscardedRows() {
+        return discardedRows;
+    }
+
+    public synchronized boolean isReady() {
+        return currentSize >= requestedSize;
     }
 
     @NotNull
     public List<Column> getColumns() {
-        return unmodifiableList(columns);
+        return columns;
+    }
+
+    /**
+     * Returns the columns that are needed for verifying the unique constraints.
+     * If this is empty, existing data does not need to be loaded at all.
+     */
+    @NotNull
+    public List<Column> getKeyColumns() {
+        return plan.getKeyColumns();
+    }
+
+    /**
+     * Returns the unique constraints that the generated rows need to satisfy.
+     */
+    @NotNull
+    public List<UniqueConstraint> getUniqueConstraints() {
+        return plan.getUniqueConstraints();
+    }
+
+    @NotNull
+    public UniqueVerification getUniqueVerification() {
+        return plan.getUniqueVerification();
+    }
+
+    @NotNull
+    public TablePlan getPlan() {
+        return plan;
     }
 
     @NotNull
     public Table getTable() {
         return table;
     }
+
+    /**
+     * Returns true only when called for the first time, so that the caller may
+     * report failure to generate all the requested rows exactly once.
+     */
+    synchronized boolean markShortfallReported() {
+        boolean first = !shortfallReported;
+        shortfallReported = true;
+        return first;
+    }
+
+    @NotNull
+    Object getGenerationLock() {
+        return generationLock;
+    }
+
+    @Nullable
+    synchronized RowGenerator getRowGenerator() {
+        return rowGenerator;
+    }
+
+    synchronized void setRowGenerator(@NotNull RowGenerator rowGenerator) {
+        this.rowGenerator = rowGenerator;
+    }
 }
@@ -0,0 +1,330 @@
+/*
+ * Copyright (c) 2012 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fi.evident.herdwick.generators;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A chunk of generated rows stored column by column. Each column is a single array of its
+ * primitive type (or of objects), allocated once for the capacity of the chunk, and nulls of
+ * primitive columns are tracked in a bitmap of their own. ASCII strings are stored as bytes in
+ * a growing buffer of the column. The chunk is also a list of {@link Row}s, which are views to
+ * the arrays, so chunks can be passed to writers expecting lists of rows.
+ * <p>
+ * Rows are generated into the free slots past the current size. Accepted rows are moved to the
+ * slot just past the size and added with {@link #addRow()}, while the rest are overwritten.
+ */
+public final class Chunk extends AbstractList<List<?>> implements RandomAccess {
+
+    @NotNull
+    private final ValueType[] types;
+
+    /**
+     * The arrays holding the values of each column.
+     */
+    @NotNull
+    private final Object[] columns;
+
+    /**
+     * Bitmaps of null values for primitive columns, allocated when the first null is stored.
+     */
+    @NotNull
+    private final long[][] nulls;
+
+    private final int capacity;
+
+    private int size = 0;
+
+    /**
+     * Constructs an empty chunk for at most {@code capacity} rows with columns of given types.
+     */
+    public Chunk(@NotNull ValueType[] types, int capacity) {
+        if (capacity < 0) throw new IllegalArgumentException("negative capacity: " + capacity);
+
+        this.types = types;
+        this.capacity = capacity;
+        this.columns = new Object[types.length];
+        this.nulls = new long[types.length][];
+
+        for (int i = 0; i < types.length; i++)
+            columns[i] = createColumn(types[i], capacity);
+    }
+
+    @NotNull
+    private static Object createColumn(@NotNull ValueType type, int capacity) {
+        switch (type) {
+            case INT:     return new int[capacity];
+            case LONG:    return new long[capacity];
+            case DOUBLE:  return new double[capacity];
+            case BOOLEAN: return new boolean[capacity];
+            case ASCII:   return new AsciiColumn(capacity);
+            default:      return new Object[capacity];
+        }
+    }
+
+    /**
+     * Returns a view to the row at given index, which may also be the slot just past the current size.
+     */
+    @NotNull
+    public Row row(int index) {
+        if (index < 0 || index >= capacity) throw new IndexOutOfBoundsException("index " + index + " out of bounds for capacity " + capacity);
+
+        return new Row(this, index);
+    }
+
+    /**
+     * Adds the row stored in the slot just past the current size to the chunk.
+     */
+    public void addRow() {
+        if (size >= capacity) throw new IllegalStateException("chunk is full");
+
+        size++;
+    }
+
+    public boolean isFull() {
+        return size >= capacity;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getColumnCount() {
+        return types.length;
+    }
+
+    @NotNull
+    public ValueType getType(int column) {
+        return types[column];
+    }
+
+    @NotNull
+    @Override
+    public Row get(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException("index " + index + " out of bounds for size " + size);
+
+        return new Row(this, index);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    public boolean isNull(int row, int column) {
+        if (types[column] == ValueType.OBJECT)
+            return ((Object[]) columns[column])[row] == null;
+
+        long[] bitmap = nulls[column];
+        return bitmap != null && (bitmap[row >>> 6] & (1L << row)) != 0;
+    }
+
+    public int getInt(int row, int column) {
+        return ((int[]) columns[column])[row];
+    }
+
+    public long getLong(int row, int column) {
+        return ((long[]) columns[column])[row];
+    }
+
+    public double getDouble(int row, int column) {
+        return ((double[]) columns[column])[row];
+    }
+
+    public boolean getBoolean(int row, int column) {
+        return ((boolean[]) columns[column])[row];
+    }
+
+    /**
+     * Returns the buffer holding the bytes of given ASCII column. The buffer may be replaced
+     * when values are added, so it should be retrieved again after modifications.
+     */
+    @NotNull
+    public byte[] getAsciiBytes(int column) {
+        return getAsciiColumn(column).getBytes();
+    }
+
+    /**
+     * Returns the offset of the value of given cell of an ASCII column in the buffer of the column.
+     */
+    public int getAsciiOffset(int row, int column) {
+        return getAsciiColumn(column).getOffset(row);
+    }
+
+    /**
+     * Returns the length in bytes of the value of given cell of an ASCII column.
+     */
+    public int getAsciiLength(int row, int column) {
+        return getAsciiColumn(column).getLength(row);
+    }
+
+    public void setInt(int row, int column, int value) {
+        ((int[]) columns[column])[row] = value;
+        clearNull(row, column);
+    }
+
+    public void setLong(int row, int column, long value) {
+        ((long[]) columns[column])[row] = value;
+        clearNull(row, column);
+    }
+
+    public void setDouble(int row, int column, double value) {
+        ((double[]) columns[column])[row] = value;
+        clearNull(row, column);
+    }
+
+    public void setBoolean(int row, int column, boolean value) {
+        ((boolean[]) columns[column])[row] = value;
+        clearNull(row, column);
+    }
+
+    /**
+     * Returns the value of given cell, boxing primitive values.
+     */
+    @Nullable
+    public Object getValue(int row, int column) {
+        if (isNull(row, column))
+            return null;
+
+        switch (types[column]) {
+            case INT:     return getInt(row, column);
+            case LONG:    return getLong(row, column);
+            case DOUBLE:  return getDouble(row, column);
+            case BOOLEAN: return getBoolean(row, column);
+            case ASCII:   return getAsciiColumn(column).get(row);
+            default:      return ((Object[]) columns[column])[row];
+        }
+    }
+
+    /**
+     * Sets the value of given cell. Values of primitive columns are unboxed, so they must be
+     * {@code null} or of the column's type.
+     */
+    public void setValue(int row, int column, @Nullable Object value) {
+        ValueType type = types[column];
+        if (type == ValueType.OBJECT) {
+            ((Object[]) columns[column])[row] = value;
+        } else if (value == null) {
+            setNull(row, column);
+        } else {
+            switch (type) {
+                case INT:     setInt(row, column, unbox(column, value, Integer.class)); break;
+                case LONG:    setLong(row, column, unbox(column, value, Long.class)); break;
+                case DOUBLE:  setDouble(row, column, unbox(column, value, Double.class)); break;
+                case BOOLEAN: setBoolean(row, column, unbox(column, value, Boolean.class)); break;
+                default:
+                    if (!getAsciiColumn(column).set(row, unbox(column, value, String.class)))
+                        throw new IllegalArgumentException("expected ASCII string for column " + column + ", but got: " + value);
+                    clearNull(row, column);
+            }
+        }
+    }
+
+    /**
+     * Moves the values of a row to another slot, overwriting its previous values.
+     */
+    void moveRow(int from, int to) {
+        for (int column = 0; column < columns.length; column++) {
+            Object array = columns[column];
+            if (array instanceof AsciiColumn)
+                ((AsciiColumn) array).move(from, to);
+            else
+                System.arraycopy(array, from, array, to, 1);
+
+            if (types[column] == ValueType.OBJECT)
+                continue;
+
+            if (isNull(from, column))
+                setNull(to, column);
+            else
+                clearNull(to, column);
+        }
+    }
+
+    @NotNull
+    int[] getIntColumn(int column) {
+        return (int[]) columns[column];
+    }
+
+    @NotNull
+    long[] getLongColumn(int column) {
+        return (long[]) columns[column];
+    }
+
+    @NotNull
+    double[] getDoubleColumn(int column) {
+        return (double[]) columns[column];
+    }
+
+    @NotNull
+    boolean[] getBooleanColumn(int column) {
+        return (boolean[]) columns[column];
+    }
+
+    @NotNull
+    Object[] getObjectColumn(int column) {
+        return (Object[]) columns[column];
+    }
+
+    @NotNull
+    AsciiColumn getAsciiColumn(int column) {
+        return (AsciiColumn) columns[column];
+    }
+
+    /**
+     * Marks given range of a primitive column as non-null after it has been filled directly.
+     */
+    void clearNulls(int column, int offset, int count) {
+        long[] bitmap = nulls[column];
+        if (bitmap != null)
+            for (int row = offset, end = offset + count; row < end; row++)
+                bitmap[row >>> 6] &= ~(1L << row);
+    }
+
+    private void setNull(int row, int column) {
+        long[] bitmap = nulls[column];
+        if (bitmap == null)
+            nulls[column] = bitmap = new long[(capacity + 63) >>> 6];
+
+        bitmap[row >>> 6] |= 1L << row;
+    }
+
+    private void clearNull(int row, int column) {
+        long[] bitmap = nulls[column];
+        if (bitmap != null)
+            bitmap[row >>> 6] &= ~(1L << row);
+    }
+
+    @NotNull
+    private <T> T unbox(int column, @NotNull Object value, @NotNull Class<T> type) {
+        if (!type.isInstance(value))
+            throw new IllegalArgumentException("expected " + type.getSimpleName() + " for column " + column + " of type " + types[column] + ", but got: " + value);
+
+        return type.cast(value);
+    }
+}
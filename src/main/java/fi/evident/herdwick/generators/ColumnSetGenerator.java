@@ -27,8 +27,18 @@ import org.jetbrains.annotations.NotNull;
 import java.util.Random;
 
 /**
- * Generates values for one or more columns of given row.
+ * Generates values for one or more columns of rows.
  */
 interface ColumnSetGenerator {
-    void generate(@NotNull Object[] row, @NotNull Random random);
+
+    /**
+     * Stores the types of the values that this generator produces into the positions
+     * of given array corresponding to its columns.
+     */
+    void declareTypes(@NotNull ValueType[] types);
+
+    /**
+     * Generates values for {@code count} rows of given chunk, starting at {@code offset}.
+     */
+    void fill(@NotNull Chunk chunk, int offset, int count, @NotNull Random random);
 }
@@ -23,18 +23,32 @@
 package fi.evident.herdwick.generators;
 
 import fi.evident.dalesbred.Database;
+import fi.evident.dalesbred.SQL;
+import fi.evident.dalesbred.TransactionCallback;
+import fi.evident.dalesbred.TransactionContext;
 import fi.evident.herdwick.dialects.Dialect;
 import fi.evident.herdwick.model.Column;
 import fi.evident.herdwick.model.Reference;
 import fi.evident.herdwick.model.Table;
+import fi.evident.herdwick.model.UniqueConstraint;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Types;
 import java.util.*;
 import java.util.logging.Logger;
 
+import static fi.evident.herdwick.generators.StreamingQuery.forEachRow;
+import static fi.evident.herdwick.generators.StreamingQuery.readRow;
+import static fi.evident.herdwick.generators.UniqueConstraintVerifier.addToAll;
+import static fi.evident.herdwick.generators.UniqueConstraintVerifier.createUniqueConstraintVerifiers;
+import static fi.evident.herdwick.generators.UniqueConstraintVerifier.satisfiesAll;
 import static java.lang.Math.min;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
 
 /**
  * Facade responsible for populating {@link Batch} with generated data.
@@ -47,59 +61,303 @@ public final class DataGenerator {
     @NotNull
     private final Dialect dialect;
 
+    /**
+     * The root of the random streams. Generating threads never use this directly, but get
+     * streams of their own, so that they don't contend on the state of a shared random.
+     *
+     * @see #newRandom()
+     */
     @NotNull
-    private final Random random = new Random();
+    private final SplittableRandom random = new SplittableRandom();
+
+    /**
+     * Seed from which all the random streams are derived, or {@code null} if a random seed is used.
+     */
+    @Nullable
+    private Long seed;
 
     @NotNull
     private static final Logger log = Logger.getLogger(DataGenerator.class.getName());
 
     private static final int MAX_DISCARDED_ROWS = 10000;
 
+    /**
+     * Generators producing unique values for columns. These are retained so that
+     * subsequent batches for the same table continue where the previous ended.
+     */
+    @NotNull
+    private final Map<Column, Generator<?>> uniqueGenerators = new HashMap<Column, Generator<?>>();
+
+    /**
+     * Keys captured when inserting rows, by the column they were captured from.
+     */
+    @NotNull
+    private final Map<Column, KeyPool> keyPools = new HashMap<Column, KeyPool>();
+
+    /**
+     * Amount of chunks generated for each table with the current seed. The indices of chunks continue
+     * over populate-calls, so that populating a table again with the same seed produces new rows.
+     */
+    @NotNull
+    private final Map<Table, Integer> chunkCounts = new HashMap<Table, Integer>();
+
+    private boolean uniqueValuesByConstruction = false;
+
+    private int referencePoolSize = 0;
+
+    private double denseReferenceThreshold = 0.9;
+
     public DataGenerator(@NotNull Database db, @NotNull Dialect dialect) {
         this.db = db;
         this.dialect = dialect;
     }
 
+    /**
+     * Prepares given batch for generation of rows. This loads the keys of existing rows and the
+     * data needed by the generators (e.g. referenced keys) from the database, so it should be called
+     * by the thread owning the transaction before rows are generated on other threads.
+     */
     public void prepare(@NotNull Batch batch) {
-        int discarded = 0;
+        loadExistingRows(batch);
+        reserveKeys(batch);
+        rowGeneratorFor(batch);
+    }
 
-        RowGenerator rowGenerator = createRowGenerator(batch.getTable(), batch.getColumns());
+    /**
+     * Reserves a block of keys for the preallocated key column of the batch, if any.
+     */
+    private void reserveKeys(@NotNull final Batch batch) {
+        final Column column = batch.getPreallocatedKeyColumn();
+        if (column == null || batch.getRequestedSize() <= 0)
+            return;
+
+        long firstKey = db.withTransaction(new TransactionCallback<Long>() {
+            @NotNull
+            @Override
+            public Long execute(@NotNull TransactionContext tx) throws SQLException {
+                return dialect.reserveKeys(tx.getConnection(), column, batch.getRequestedSize());
+            }
+        });
 
-        while (!batch.isReady() && discarded < MAX_DISCARDED_ROWS) {
-            List<Object> row = rowGenerator.createRow(random);
+        batch.reserveKeys(firstKey);
+    }
 
-            if (!batch.addRow(row))
-                discarded++;
+    /**
+     * Streams the values of key columns of existing rows into the batch. Other columns are not
+     * needed for verifying the unique constraints, so they are not loaded.
+     */
+    private void loadExistingRows(@NotNull final Batch batch) {
+        final List<Column> keyColumns = batch.getKeyColumns();
+        if (keyColumns.isEmpty() || batch.getUniqueVerification() != UniqueVerification.CLIENT)
+            return;
+
+        db.withTransaction(new TransactionCallback<Void>() {
+            @Nullable
+            @Override
+            public Void execute(@NotNull TransactionContext tx) throws SQLException {
+                @SQL
+                String sql = dialect.selectAll(keyColumns, batch.getTable());
+
+                forEachRow(tx.getConnection(), sql, new StreamingQuery.RowHandler() {
+                    @Override
+                    public void handleRow(@NotNull ResultSet rs) throws SQLException {
+                        batch.addExistingRow(asList(readRow(rs, keyColumns.size())));
+                    }
+                });
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Generates at most {@code maxRows} new rows for given batch. Returns an empty list
+     * if the batch is ready or no more rows satisfying unique constraints can be generated.
+     * Multiple threads may generate rows for the same batch concurrently, provided that the
+     * generators used are thread-safe.
+     */
+    @NotNull
+    public List<List<?>> generateRows(@NotNull Batch batch, int maxRows) {
+        if (maxRows <= 0) throw new IllegalArgumentException("non-positive max-rows: " + maxRows);
+
+        if (batch.isReady() || isExhausted(batch))
+            return emptyList();
+
+        Long seed = this.seed;
+        if (seed == null)
+            return generateChunk(batch, maxRows, rowGeneratorFor(batch).sharedStreams(newRandom()));
+
+        // The rows accepted into a chunk depend on the rows accepted before it, so with a fixed seed
+        // the chunks are generated one at a time, in the order of their indices, from streams derived
+        // from the index. This way the rows don't depend on the amount or scheduling of threads. Each
+        // generator has a stream of its own, so that the values of a column don't depend on other columns.
+        synchronized (batch.getGenerationLock()) {
+            if (batch.isReady() || isExhausted(batch))
+                return emptyList();
+
+            int chunkIndex = nextChunkIndex(batch.getTable());
+            long tableKey = keyFor(batch.getTable().getName().toString());
+            return generateChunk(batch, maxRows, rowGeneratorFor(batch).seededStreams(seed, tableKey, chunkIndex));
         }
+    }
 
-        if (!batch.isReady())
-            log.warning("Caller requested " + batch.getRequestedSize() + " rows to be generated for " + batch.getTable().getName() + ", but could only produce " + batch.getCurrentSize() + " rows satisfying unique constraints. (Discarded " + discarded + " random rows.)");
+    @NotNull
+    private List<List<?>> generateChunk(@NotNull Batch batch, int maxRows, @NotNull Random[] streams) {
+        RowGenerator rowGenerator = rowGeneratorFor(batch);
+        Chunk chunk = new Chunk(rowGenerator.getTypes(), min(maxRows, batch.getRemainingSize()));
+
+        // The batch checks rows against each other only when verification is done on the client, but
+        // the rows of a single chunk must never conflict with each other, since the database checks
+        // the chunk only against the rows inserted before it.
+        List<UniqueConstraintVerifier> chunkVerifiers = (batch.getUniqueVerification() == UniqueVerification.DATABASE)
+                ? createUniqueConstraintVerifiers(batch.getTable(), batch.getColumns())
+                : Collections.<UniqueConstraintVerifier>emptyList();
+
+        // Candidates are generated column by column into the free slots of the chunk. Accepted rows are then
+        // moved over the rejected ones, and the slots left free are filled again on the next round.
+        while (!chunk.isFull() && !batch.isReady() && !isExhausted(batch)) {
+            int offset = chunk.size();
+            int count = min(chunk.getCapacity() - offset, batch.getRemainingSize());
+            rowGenerator.fill(chunk, offset, count, streams);
+
+            for (int i = offset, end = offset + count; i < end && !batch.isReady() && !isExhausted(batch); i++) {
+                Row row = chunk.row(i);
+
+                if (!satisfiesAll(chunkVerifiers, row)) {
+                    batch.discardRow();
+                } else if (batch.addRow(row)) {
+                    addToAll(chunkVerifiers, row);
+
+                    int slot = chunk.size();
+                    if (i != slot)
+                        chunk.moveRow(i, slot);
+                    if (batch.getPreallocatedKeyColumn() != null)
+                        batch.assignKey(chunk.row(slot));
+                    chunk.addRow();
+                }
+            }
+        }
+
+        if (isExhausted(batch) && batch.markShortfallReported())
+            log.warning("Caller requested " + batch.getRequestedSize() + " rows to be generated for " + batch.getTable().getName() + ", but could only produce " + batch.getCurrentSize() + " rows satisfying unique constraints. (Discarded " + batch.getDiscardedRows() + " random rows.)");
+
+        return chunk;
     }
 
+    private int nextChunkIndex(@NotNull Table table) {
+        synchronized (chunkCounts) {
+            Integer count = chunkCounts.get(table);
+            int index = (count != null) ? count : 0;
+            chunkCounts.put(table, index + 1);
+            return index;
+        }
+    }
+
+    /**
+     * Returns a new random stream that is independent of the streams used by other threads.
+     */
     @NotNull
-    private RowGenerator createRowGenerator(@NotNull Table table, @NotNull List<Column> columns) {
-        List<ColumnSetGenerator> generators = createGenerators(table, columns);
+    private Random newRandom() {
+        synchronized (random) {
+            return random.split();
+        }
+    }
+
+    /**
+     * Returns a new random stream for the generator identified by given key. With a fixed seed,
+     * the stream depends only on the seed and the key.
+     */
+    @NotNull
+    private Random newRandom(@NotNull String key) {
+        Long seed = this.seed;
+        if (seed != null)
+            return SplittableRandom.forKeys(seed, keyFor(key));
+        else
+            return newRandom();
+    }
+
+    private static long keyFor(@NotNull String name) {
+        return name.hashCode();
+    }
+
+    private static boolean isExhausted(@NotNull Batch batch) {
+        return batch.getDiscardedRows() >= MAX_DISCARDED_ROWS;
+    }
+
+    @NotNull
+    private RowGenerator rowGeneratorFor(@NotNull Batch batch) {
+        synchronized (batch) {
+            RowGenerator rowGenerator = batch.getRowGenerator();
+            if (rowGenerator == null) {
+                rowGenerator = createRowGenerator(batch.getPlan());
+                batch.setRowGenerator(rowGenerator);
+            }
+            return rowGenerator;
+        }
+    }
 
-        return new RowGenerator(columns.size(), generators);
+    /**
+     * Compiles a plan for generating rows for given table. This creates the generators for the columns,
+     * which may load data from the database (e.g. referenced keys), so the plan reflects the state of the
+     * database at the time of compilation. Batches created from the plan share its generators.
+     */
+    @NotNull
+    public TablePlan compilePlan(@NotNull Table table, @NotNull UniqueVerification uniqueVerification, boolean preallocateKeys) {
+        TablePlan plan = new TablePlan(table, uniqueVerification, preallocateKeys);
+        return plan.compiled(createRowGenerator(plan), dialect.createInsert(table.getName(), plan.getColumns()));
     }
 
     @NotNull
-    private List<ColumnSetGenerator> createGenerators(@NotNull Table table, @NotNull List<Column> columns) {
+    private RowGenerator createRowGenerator(@NotNull TablePlan plan) {
+        List<Column> columns = plan.getColumns();
         WorkList workList = new WorkList(columns);
 
-        List<ColumnSetGenerator> generators = new ArrayList<ColumnSetGenerator>(columns.size());
+        // Values of preallocated keys are assigned by the batch when rows are accepted
+        Column keyColumn = plan.getPreallocatedKeyColumn();
+        if (keyColumn != null)
+            workList.removeColumnsAndReturnIndices(singletonList(keyColumn));
+
+        List<Long> streamKeys = new ArrayList<Long>();
+        List<ColumnSetGenerator> generators = createGenerators(plan.getTable(), workList, streamKeys);
+
+        ValueType[] types = new ValueType[columns.size()];
+        Arrays.fill(types, ValueType.OBJECT);
+        for (ColumnSetGenerator generator : generators)
+            generator.declareTypes(types);
+        if (keyColumn != null)
+            types[columns.indexOf(keyColumn)] = (keyColumn.getDataType() == Types.BIGINT) ? ValueType.LONG : ValueType.INT;
+
+        long[] keys = new long[streamKeys.size()];
+        for (int i = 0; i < keys.length; i++)
+            keys[i] = streamKeys.get(i);
+
+        return new RowGenerator(types, generators, keys);
+    }
+
+    /**
+     * Creates the generators for the columns of the work list. The key of the random stream of each
+     * generator is added to {@code streamKeys}, in the same order as the generators.
+     */
+    @NotNull
+    private List<ColumnSetGenerator> createGenerators(@NotNull Table table, @NotNull WorkList workList, @NotNull List<Long> streamKeys) {
+        List<ColumnSetGenerator> generators = new ArrayList<ColumnSetGenerator>();
 
         // First go through all the explicitly registered column set generators
         for (Map.Entry<List<Column>,Generator<List<?>>> entry : table.getGenerators().entrySet()) {
             List<Column> generatorColumns = entry.getKey();
             int[] indices = workList.tryRemoveColumnsAndReturnIndices(generatorColumns);
-            if (indices != null)
-                generators.add(new MultiColumnColumnSetGenerator(indices, entry.getValue()));
+            if (indices != null) {
+                Generator<List<?>> generator = entry.getValue();
+                if (generator instanceof SingleColumnGenerator)
+                    generators.add(new SingleValueColumnSetGenerator(indices[0], ((SingleColumnGenerator) generator).getGenerator()));
+                else
+                    generators.add(new MultiColumnColumnSetGenerator(indices, generator));
+                streamKeys.add(keyFor(generatorColumns.toString()));
+            }
         }
 
         // Go through all the foreign keys and try to build generators for them
         while (true) {
-            ColumnSetGenerator referenceGenerator = extractReferenceGenerator(workList);
+            ColumnSetGenerator referenceGenerator = extractReferenceGenerator(workList, streamKeys);
             if (referenceGenerator != null)
                 generators.add(referenceGenerator);
             else
@@ -107,27 +365,102 @@ public final class DataGenerator {
         }
 
         // Then go through the remaining items
-        for (IndexedColumn column : workList)
+        for (IndexedColumn column : workList) {
             generators.add(new SingleValueColumnSetGenerator(column.index, generatorFor(column.column)));
+            streamKeys.add(keyFor(singletonList(column.column).toString()));
+        }
 
         return generators;
     }
 
     @Nullable
-    private ReferenceGenerator extractReferenceGenerator(@NotNull WorkList workList) {
+    private ColumnSetGenerator extractReferenceGenerator(@NotNull WorkList workList, @NotNull List<Long> streamKeys) {
         for (IndexedColumn column : workList) {
             Reference reference = findReferenceWithSourceColumn(column.column);
             if (reference != null) {
                 int[] indices = workList.removeColumnsAndReturnIndices(reference.getSourceColumns());
-                return new ReferenceGenerator(db, dialect, reference, indices);
+                streamKeys.add(keyFor(reference.getSourceColumns().toString()));
+
+                KeyPool keyPool = (reference.getColumnCount() == 1) ? findKeyPool(reference.getTargetColumns().get(0)) : null;
+                if (keyPool != null && (keyPool.size() != 0 || keyPool.isLoading()))
+                    return new KeyPoolReferenceGenerator(keyPool, indices[0], reference.getTargetColumns().get(0).getDataType() == Types.BIGINT);
+
+                KeyRangeReferenceGenerator rangeGenerator = KeyRangeReferenceGenerator.tryCreate(db, dialect, reference, indices[0], denseReferenceThreshold);
+                if (rangeGenerator != null)
+                    return rangeGenerator;
+
+                return new ReferenceGenerator(db, dialect, reference, indices, referencePoolSize, newRandom(reference.toString()));
             }
         }
 
         return null;
     }
 
+    /**
+     * Returns the pool of captured keys for given column, creating it if necessary. Once a pool
+     * contains keys or is being loaded, references to the column are generated using the keys of
+     * the pool only.
+     */
+    @NotNull
+    public KeyPool keyPoolFor(@NotNull Column column) {
+        synchronized (keyPools) {
+            KeyPool pool = keyPools.get(column);
+            if (pool == null) {
+                pool = new KeyPool();
+                keyPools.put(column, pool);
+            }
+            return pool;
+        }
+    }
+
+    @Nullable
+    private KeyPool findKeyPool(@NotNull Column column) {
+        synchronized (keyPools) {
+            return keyPools.get(column);
+        }
+    }
+
+    @NotNull
+    private Generator<?> generatorFor(@NotNull Column column) {
+        if (uniqueValuesByConstruction && hasUniqueConstraint(column)) {
+            // Tables may be populated concurrently
+            synchronized (uniqueGenerators) {
+                Generator<?> generator = uniqueGenerators.get(column);
+                if (generator == null) {
+                    generator = uniqueGeneratorFor(column);
+                    if (generator != null)
+                        uniqueGenerators.put(column, generator);
+                }
+                if (generator != null)
+                    return generator;
+            }
+        }
+
+        return defaultGeneratorFor(column);
+    }
+
+    @Nullable
+    private Generator<?> uniqueGeneratorFor(@NotNull Column column) {
+        switch (column.getDataType()) {
+            case Types.VARCHAR:
+                return new UniqueStringGenerator(min(column.getSize(), 1000), newRandom(column.toString()));
+            case Types.INTEGER:
+                return new UniqueIntegerGenerator(newRandom(column.toString()));
+            default:
+                return null;
+        }
+    }
+
+    private static boolean hasUniqueConstraint(@NotNull Column column) {
+        for (UniqueConstraint constraint : column.getTable().getUniqueConstraints())
+            if (constraint.getColumns().contains(column))
+                return true;
+
+        return false;
+    }
+
     @NotNull
-    private static Generator<?> generatorFor(@NotNull Column column) {
+    private static Generator<?> defaultGeneratorFor(@NotNull Column column) {
         switch (column.getDataType()) {
             case Types.VARCHAR:
                 return new SimpleStringGenerator(min(column.getSize(), 1000));
@@ -141,6 +474,47 @@ public final class DataGenerator {
         }
     }
 
+    public boolean isUniqueValuesByConstruction() {
+        return uniqueValuesByConstruction;
+    }
+
+    public void setUniqueValuesByConstruction(boolean uniqueValuesByConstruction) {
+        this.uniqueValuesByConstruction = uniqueValuesByConstruction;
+    }
+
+    @Nullable
+    public Long getSeed() {
+        return seed;
+    }
+
+    public void setSeed(@Nullable Long seed) {
+        this.seed = seed;
+
+        synchronized (chunkCounts) {
+            chunkCounts.clear();
+        }
+    }
+
+    public int getReferencePoolSize() {
+        return referencePoolSize;
+    }
+
+    public void setReferencePoolSize(int referencePoolSize) {
+        if (referencePoolSize < 0) throw new IllegalArgumentException("negative reference-pool-size: " + referencePoolSize);
+
+        this.referencePoolSize = referencePoolSize;
+    }
+
+    public double getDenseReferenceThreshold() {
+        return denseReferenceThreshold;
+    }
+
+    public void setDenseReferenceThreshold(double denseReferenceThreshold) {
+        if (denseReferenceThreshold <= 0) throw new IllegalArgumentException("non-positive dense-reference-threshold: " + denseReferenceThreshold);
+
+        this.denseReferenceThreshold = denseReferenceThreshold;
+    }
+
     @Nullable
     public static Reference findReferenceWithSourceColumn(@NotNull Column column) {
         for (Reference reference : column.getTable().getForeignKeys())
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2012 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fi.evident.herdwick.generators;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Integer keys of rows inserted into a table, stored compactly in a primitive array. When rows
+ * are inserted with captured keys, references to them can be generated from the pool instead of
+ * reading the keys back from the database. Pools are thread-safe, so that keys can be added while
+ * other threads are generating references. While the table is being loaded, threads needing keys
+ * wait until the first keys are published.
+ */
+public final class KeyPool {
+
+    @NotNull
+    private long[] keys = new long[1024];
+
+    private int size = 0;
+
+    private boolean loading = false;
+
+    /**
+     * Adds keys to the pool and wakes up the threads waiting for keys. Keys should be added only
+     * after the rows containing them have been committed, so that references to them are valid.
+     */
+    public synchronized void addAll(@NotNull long[] newKeys) {
+        if (size + newKeys.length > keys.length)
+            keys = Arrays.copyOf(keys, Math.max(keys.length * 2, size + newKeys.length));
+
+        System.arraycopy(newKeys, 0, keys, size, newKeys.length);
+        size += newKeys.length;
+        notifyAll();
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Marks that keys are being added to the pool, so that threads needing keys should wait for them
+     * instead of failing if the pool is empty.
+     */
+    public synchronized void startLoading() {
+        loading = true;
+    }
+
+    /**
+     * Marks that no more keys are being added to the pool.
+     */
+    public synchronized void finishLoading() {
+        loading = false;
+        notifyAll();
+    }
+
+    public synchronized boolean isLoading() {
+        return loading;
+    }
+
+    /**
+     * Returns a random key of the pool. If the pool is empty, but being loaded, waits until
+     * the first keys are added.
+     *
+     * @throws IllegalStateException if the pool is empty and not being loaded
+     */
+    public synchronized long randomKey(@NotNull Random random) {
+        try {
+            while (size == 0 && loading)
+                wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("interrupted while waiting for keys", e);
+        }
+
+        if (size == 0) throw new IllegalStateException("empty key pool");
+
+        return keys[random.nextInt(size)];
+    }
+}
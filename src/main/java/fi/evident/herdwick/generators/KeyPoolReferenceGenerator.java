@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2012 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fi.evident.herdwick.generators;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Random;
+
+/**
+ * Generates foreign key references to a single integer column using keys captured
+ * when the referenced rows were inserted.
+ */
+final class KeyPoolReferenceGenerator implements ColumnSetGenerator {
+
+    @NotNull
+    private final KeyPool pool;
+
+    private final int index;
+    private final boolean bigint;
+
+    KeyPoolReferenceGenerator(@NotNull KeyPool pool, int index, boolean bigint) {
+        this.pool = pool;
+        this.index = index;
+        this.bigint = bigint;
+    }
+
+    @Override
+    public void declareTypes(@NotNull ValueType[] types) {
+        types[index] = bigint ? ValueType.LONG : ValueType.INT;
+    }
+
+    @Override
+    public void fill(@NotNull Chunk chunk, int offset, int count, @NotNull Random random) {
+        for (int row = offset, end = offset + count; row < end; row++) {
+            long value = pool.randomKey(random);
+            if (bigint)
+                chunk.setLong(row, index, value);
+            else
+                chunk.setInt(row, index, (int) value);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2012 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fi.evident.herdwick.generators;
+
+import fi.evident.dalesbred.Database;
+import fi.evident.dalesbred.SQL;
+import fi.evident.dalesbred.TransactionCallback;
+import fi.evident.dalesbred.TransactionContext;
+import fi.evident.herdwick.dialects.Dialect;
+import fi.evident.herdwick.model.Column;
+import fi.evident.herdwick.model.Reference;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.*;
+import java.util.BitSet;
+import java.util.Random;
+
+import static fi.evident.herdwick.generators.StreamingQuery.forEachRow;
+import static java.util.Collections.singletonList;
+
+/**
+ * Generates foreign key references to a single integer column whose values are densely packed
+ * in a range, without loading the values themselves. If there are no gaps in the range, values
+ * are picked directly from it. Otherwise existing values are recorded in a bitmap, using one bit
+ * per value in the range, and values falling in gaps are re-drawn.
+ */
+final class KeyRangeReferenceGenerator implements ColumnSetGenerator {
+
+    private final int index;
+    private final long min;
+    private final long size;
+    private final boolean bigint;
+
+    /**
+     * Values of the range that are present, or {@code null} if all of them are.
+     */
+    @Nullable
+    private final BitSet present;
+
+    private KeyRangeReferenceGenerator(int index, long min, long size, boolean bigint, @Nullable BitSet present) {
+        this.index = index;
+        this.min = min;
+        this.size = size;
+        this.bigint = bigint;
+        this.present = present;
+    }
+
+    /**
+     * Returns a generator for given reference, or {@code null} if the reference is not to a single
+     * integer column or the density of referenced values is below given threshold.
+     */
+    @Nullable
+    static KeyRangeReferenceGenerator tryCreate(@NotNull Database db, @NotNull final Dialect dialect, @NotNull Reference reference, final int index, final double densityThreshold) {
+        if (reference.getColumnCount() != 1)
+            return null;
+
+        final Column column = reference.getTargetColumns().get(0);
+        final boolean bigint = column.getDataType() == Types.BIGINT;
+        if (!bigint && !isInteger(column.getDataType()))
+            return null;
+
+        return db.withTransaction(new TransactionCallback<KeyRangeReferenceGenerator>() {
+            @Nullable
+            @Override
+            public KeyRangeReferenceGenerator execute(@NotNull TransactionContext tx) throws SQLException {
+                Connection connection = tx.getConnection();
+
+                Statement statement = connection.createStatement();
+                try {
+                    ResultSet rs = statement.executeQuery(dialect.selectRange(column));
+                    try {
+                        if (!rs.next()) return null;
+
+                        final long min = rs.getLong(1);
+                        long max = rs.getLong(2);
+                        long count = rs.getLong(3);
+                        long size = max - min + 1;
+
+                        if (count == 0 || size <= 0 || (double) count / size < densityThreshold)
+                            return null;
+
+                        if (count == size)
+                            return new KeyRangeReferenceGenerator(index, min, size, bigint, null);
+
+                        if (size > Integer.MAX_VALUE)
+                            return null;
+
+                        final BitSet present = new BitSet((int) size);
+
+                        @SQL
+                        String sql = dialect.selectAll(singletonList(column), column.getTable());
+                        forEachRow(connection, sql, new StreamingQuery.RowHandler() {
+                            @Override
+                            public void handleRow(@NotNull ResultSet rs) throws SQLException {
+                                long value = rs.getLong(1);
+                                if (!rs.wasNull())
+                                    present.set((int) (value - min));
+                            }
+                        });
+
+                        return new KeyRangeReferenceGenerator(index, min, size, bigint, present);
+
+                    } finally {
+                        rs.close();
+                    }
+                } finally {
+                    statement.close();
+                }
+            }
+        });
+    }
+
+    private static boolean isInteger(int dataType) {
+        return dataType == Types.INTEGER || dataType == Types.SMALLINT || dataType == Types.TINYINT;
+    }
+
+    @Override
+    public void declareTypes(@NotNull ValueType[] types) {
+        types[index] = bigint ? ValueType.LONG : ValueType.INT;
+    }
+
+    @Override
+    public void fill(@NotNull Chunk chunk, int offset, int count, @NotNull Random random) {
+        for (int row = offset, end = offset + count; row < end; row++) {
+            long value = min + randomOffset(random);
+            if (bigint)
+                chunk.setLong(row, index, value);
+            else
+                chunk.setInt(row, index, (int) value);
+        }
+    }
+
+    private long randomOffset(@NotNull Random random) {
+        long offset;
+        do {
+            offset = (long) (random.nextDouble() * size);
+        } while (present != null && !present.get((int) offset));
+        return offset;
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2012 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fi.evident.herdwick.generators;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Random;
+
+import static java.lang.Long.numberOfLeadingZeros;
+
+/**
+ * A pseudo-random bijection of {@code [0, size)} onto itself. Implemented as a balanced
+ * Feistel network over the smallest domain of even bit-width containing {@code size} values,
+ * using cycle-walking to map values that fall outside of {@code [0, size)} back in.
+ */
+final class KeyedPermutation {
+
+    private static final int ROUNDS = 4;
+
+    static final long MAX_SIZE = 1L << 62;
+
+    private final long size;
+    private final int halfBits;
+    private final long halfMask;
+
+    @NotNull
+    private final long[] keys = new long[ROUNDS];
+
+    KeyedPermutation(long size, @NotNull Random random) {
+        if (size <= 0 || size > MAX_SIZE) throw new IllegalArgumentException("invalid size: " + size);
+
+        int bits = Math.max(2, 64 - numberOfLeadingZeros(size - 1));
+        this.size = size;
+        this.halfBits = (bits + 1) / 2;
+        this.halfMask = (1L << halfBits) - 1;
+
+        for (int i = 0; i < keys.length; i++)
+            keys[i] = random.nextLong();
+    }
+
+    long size() {
+        return size;
+    }
+
+    long permute(long value) {
+        if (value < 0 || value >= size) throw new IllegalArgumentException("value " + value + " is not in range [0, " + size + ')');
+
+        // Since the network is a permutation of a domain that is less than four times
+        // larger than [0, size), we'll get back to the range after a few rounds.
+        long result = value;
+        do {
+            result = encrypt(result);
+        } while (result >= size);
+
+        return result;
+    }
+
+    private long encrypt(long value) {
+        long left = value >>> halfBits;
+        long right = value & halfMask;
+
+        for (long key : keys) {
+            long next = left ^ (mix(right ^ key) & halfMask);
+            left = right;
+            right = next;
+        }
+
+        return (left << halfBits) | right;
+    }
+
+    /**
+     * Finalizer of MurmurHash3, which provides a good avalanche effect.
+     */
+    private static long mix(long value) {
+        long h = value;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2012 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fi.evident.herdwick.generators;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Random;
+
+/**
+ * Base class for generators producing non-null {@code long} values. Populator stores and
+ * binds the values produced by these generators without boxing them.
+ */
+public abstract class LongGenerator implements Generator<Long> {
+
+    public abstract long nextLong(@NotNull Random random);
+
+    /**
+     * Stores {@code count} values into given array, starting at {@code offset}. The default implementation
+     * calls {@link #nextLong(Random)} for each value, but subclasses may override this with a faster loop.
+     */
+    public void fill(@NotNull long[] values, int offset, int count, @NotNull Random random) {
+        for (int i = offset, end = offset + count; i < end; i++)
+            values[i] = nextLong(random);
+    }
+
+    @NotNull
+    @Override
+    public final Long randomValue(@NotNull Random random) {
+        return nextLong(random);
+    }
+}
@@ -38,16 +38,24 @@ final class MultiColumnColumnSetGenerator implements ColumnSetGenerator {
     }
 
     @Override
-    public void generate(@NotNull Object[] row, @NotNull Random random) {
-        List<?> values = generator.randomValue(random);
+    public void declareTypes(@NotNull ValueType[] types) {
+        for (int index : indices)
+            types[index] = ValueType.OBJECT;
+    }
+
+    @Override
+    public void fill(@NotNull Chunk chunk, int offset, int count, @NotNull Random random) {
+        for (int row = offset, end = offset + count; row < end; row++) {
+            List<?> values = generator.randomValue(random);
 
-        if (values == null)
-            throw new NullPointerException("got null values from generator " + generator);
+            if (values == null)
+                throw new NullPointerException("got null values from generator " + generator);
 
-        if (values.size() != indices.length)
-            throw new IllegalStateException("expected " + indices.length + " values from generator " + generator + ", but got " + values.size());
+            if (values.size() != indices.length)
+                throw new IllegalStateException("expected " + indices.length + " values from generator " + generator + ", but got " + values.size());
 
-        for (int i = 0; i < indices.length; i++)
-            row[indices[i]] = values.get(i);
+            for (int i = 0; i < indices.length; i++)
+                chunk.setValue(row, indices[i], values.get(i));
+        }
     }
 }
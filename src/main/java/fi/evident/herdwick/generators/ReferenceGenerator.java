@@ -23,15 +23,23 @@
 package fi.evident.herdwick.generators;
 
 import fi.evident.dalesbred.Database;
-import fi.evident.dalesbred.ResultTable;
 import fi.evident.dalesbred.SQL;
+import fi.evident.dalesbred.TransactionCallback;
+import fi.evident.dalesbred.TransactionContext;
 import fi.evident.herdwick.dialects.Dialect;
 import fi.evident.herdwick.model.Reference;
 import org.jetbrains.annotations.NotNull;
 
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 
+import static fi.evident.herdwick.generators.StreamingQuery.forEachRow;
+import static fi.evident.herdwick.generators.StreamingQuery.readRow;
+
 /**
  * Generates random foreign key references.
  */
@@ -41,27 +49,97 @@ final class ReferenceGenerator implements ColumnSetGenerator {
     private final int[] indices;
 
     @NotNull
-    private final List<ResultTable.ResultRow> ids;
+    private final List<Object[]> ids;
 
-    ReferenceGenerator(@NotNull Database db, @NotNull Dialect dialect, @NotNull Reference reference, @NotNull int[] indices) {
+    /**
+     * Constructs a generator for given reference. If {@code poolSize} is positive, only a random
+     * sample of at most {@code poolSize} referenced keys is loaded and used for generating values.
+     * Otherwise all referenced keys are loaded.
+     */
+    ReferenceGenerator(@NotNull Database db, @NotNull final Dialect dialect, @NotNull final Reference reference, @NotNull int[] indices, final int poolSize, @NotNull final Random random) {
         assert indices.length == reference.getColumnCount();
 
         this.indices = indices;
 
-        @SQL
-        String sql = dialect.selectAll(reference.getTargetColumns(), reference.getTargetTable());
+        ids = db.withTransaction(new TransactionCallback<List<Object[]>>() {
+            @NotNull
+            @Override
+            public List<Object[]> execute(@NotNull TransactionContext tx) throws SQLException {
+                Connection connection = tx.getConnection();
+
+                @SQL
+                String selectAll = dialect.selectAll(reference.getTargetColumns(), reference.getTargetTable());
+
+                if (poolSize <= 0)
+                    return loadAll(connection, selectAll, reference.getColumnCount());
 
-        ids = db.findTable(sql).getRows();
+                @SQL
+                String selectSample = dialect.selectSample(connection, reference.getTargetColumns(), reference.getTargetTable(), poolSize);
+                if (selectSample != null)
+                    return loadAll(connection, selectSample, reference.getColumnCount());
+                else
+                    return loadReservoirSample(connection, selectAll, reference.getColumnCount(), poolSize, random);
+            }
+        });
 
         if (ids.isEmpty())
             throw new IllegalStateException("Can't construct a generator for columns " + reference.getSourceColumns() + ", because the referenced table " + reference.getTargetTable().getName() + " contains no rows.");
     }
 
+    @NotNull
+    private static List<Object[]> loadAll(@NotNull Connection connection, @NotNull @SQL String sql, final int columnCount) throws SQLException {
+        final List<Object[]> result = new ArrayList<Object[]>();
+
+        forEachRow(connection, sql, new StreamingQuery.RowHandler() {
+            @Override
+            public void handleRow(@NotNull ResultSet rs) throws SQLException {
+                result.add(readRow(rs, columnCount));
+            }
+        });
+
+        return result;
+    }
+
+    /**
+     * Streams through all the rows returned by the query, keeping a uniformly distributed
+     * random sample of at most {@code size} rows in memory.
+     */
+    @NotNull
+    private static List<Object[]> loadReservoirSample(@NotNull Connection connection, @NotNull @SQL String sql, final int columnCount, final int size, @NotNull final Random random) throws SQLException {
+        final List<Object[]> sample = new ArrayList<Object[]>(size);
+
+        forEachRow(connection, sql, new StreamingQuery.RowHandler() {
+            private long seen = 0;
+
+            @Override
+            public void handleRow(@NotNull ResultSet rs) throws SQLException {
+                seen++;
+                if (sample.size() < size) {
+                    sample.add(readRow(rs, columnCount));
+                } else {
+                    long index = (long) (random.nextDouble() * seen);
+                    if (index < size)
+                        sample.set((int) index, readRow(rs, columnCount));
+                }
+            }
+        });
+
+        return sample;
+    }
+
+    @Override
+    public void declareTypes(@NotNull ValueType[] types) {
+        for (int index : indices)
+            types[index] = ValueType.OBJECT;
+    }
+
     @Override
-    public void generate(@NotNull Object[] row, @NotNull Random random) {
-        ResultTable.ResultRow id = ids.get(random.nextInt(ids.size()));
+    public void fill(@NotNull Chunk chunk, int offset, int count, @NotNull Random random) {
+        for (int row = offset, end = offset + count; row < end; row++) {
+            Object[] id = ids.get(random.nextInt(ids.size()));
 
-        for (int i = 0; i < indices.length; i++)
-            row[indices[i]] = id.get(i);
+            for (int i = 0; i < indices.length; i++)
+                chunk.setValue(row, indices[i], id[i]);
+        }
     }
 }
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2012 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fi.evident.herdwick.generators;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * A view to a single row of a {@link Chunk}. Writers may read the values of primitive columns
+ * directly using the typed getters, while the {@link java.util.List} view boxes them on demand.
+ */
+public final class Row extends AbstractList<Object> implements RandomAccess {
+
+    @NotNull
+    private final Chunk chunk;
+
+    private final int index;
+
+    /**
+     * Constructs a standalone row with columns of given types.
+     */
+    public Row(@NotNull ValueType[] types) {
+        this(new Chunk(types, 1), 0);
+    }
+
+    Row(@NotNull Chunk chunk, int index) {
+        this.chunk = chunk;
+        this.index = index;
+    }
+
+    @NotNull
+    public ValueType getType(int column) {
+        return chunk.getType(column);
+    }
+
+    public boolean isNull(int column) {
+        return chunk.isNull(index, column);
+    }
+
+    public int getInt(int column) {
+        return chunk.getInt(index, column);
+    }
+
+    public long getLong(int column) {
+        return chunk.getLong(index, column);
+    }
+
+    public double getDouble(int column) {
+        return chunk.getDouble(index, column);
+    }
+
+    public boolean getBoolean(int column) {
+        return chunk.getBoolean(index, column);
+    }
+
+    @NotNull
+    public byte[] getAsciiBytes(int column) {
+        return chunk.getAsciiBytes(column);
+    }
+
+    public int getAsciiOffset(int column) {
+        return chunk.getAsciiOffset(index, column);
+    }
+
+    public int getAsciiLength(int column) {
+        return chunk.getAsciiLength(index, column);
+    }
+
+    public void setInt(int column, int value) {
+        chunk.setInt(index, column, value);
+    }
+
+    public void setLong(int column, long value) {
+        chunk.setLong(index, column, value);
+    }
+
+    public void setDouble(int column, double value) {
+        chunk.setDouble(index, column, value);
+    }
+
+    public void setBoolean(int column, boolean value) {
+        chunk.setBoolean(index, column, value);
+    }
+
+    @Nullable
+    @Override
+    public Object get(int column) {
+        return chunk.getValue(index, column);
+    }
+
+    /**
+     * Sets the value of given column. Values of primitive columns are unboxed, so they
+     * must be {@code null} or of the column's type.
+     */
+    @Nullable
+    @Override
+    public Object set(int column, @Nullable Object value) {
+        Object old = get(column);
+        chunk.setValue(index, column, value);
+        return old;
+    }
+
+    @Override
+    public int size() {
+        return chunk.getColumnCount();
+    }
+}
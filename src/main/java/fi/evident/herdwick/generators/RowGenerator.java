@@ -24,35 +24,75 @@ package fi.evident.herdwick.generators;
 
 import org.jetbrains.annotations.NotNull;
 
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.List;
 import java.util.Random;
 
-import static java.util.Arrays.asList;
-
 /**
  * Produces rows of values.
  */
 final class RowGenerator {
 
     @NotNull
-    private final Collection<ColumnSetGenerator> columnSetGenerators;
-    private final int rowSize;
+    private final ColumnSetGenerator[] columnSetGenerators;
+
+    /**
+     * Keys identifying the random streams of the generators, derived from the columns they generate.
+     */
+    @NotNull
+    private final long[] streamKeys;
 
-    RowGenerator(int rowSize, @NotNull Collection<ColumnSetGenerator> columnGenerators) {
-        if (rowSize <= 0) throw new IllegalArgumentException("row-size is not positive: " + rowSize);
-        this.rowSize = rowSize;
-        this.columnSetGenerators = columnGenerators;
+    /**
+     * Types of the columns, shared by all the rows produced.
+     */
+    @NotNull
+    private final ValueType[] types;
+
+    RowGenerator(@NotNull ValueType[] types, @NotNull Collection<ColumnSetGenerator> columnGenerators, @NotNull long[] streamKeys) {
+        if (types.length == 0) throw new IllegalArgumentException("row-size is not positive: " + types.length);
+        if (streamKeys.length != columnGenerators.size()) throw new IllegalArgumentException("expected " + columnGenerators.size() + " stream keys, but got " + streamKeys.length);
+        this.types = types;
+        this.columnSetGenerators = columnGenerators.toArray(new ColumnSetGenerator[columnGenerators.size()]);
+        this.streamKeys = streamKeys;
     }
 
     @NotNull
-    List<Object> createRow(@NotNull Random random) {
-        Object[] row = new Object[rowSize];
+    ValueType[] getTypes() {
+        return types;
+    }
 
-        for (ColumnSetGenerator columnSetGenerator : columnSetGenerators)
-            columnSetGenerator.generate(row, random);
+    /**
+     * Generates values for {@code count} rows of given chunk, starting at {@code offset}. The values
+     * are generated one column at a time, so that each generator runs in a tight loop. The generators
+     * are called through an interface, but only once per column for the whole range of rows, so the
+     * cost of the dispatch does not depend on the amount of rows.
+     */
+    void fill(@NotNull Chunk chunk, int offset, int count, @NotNull Random[] streams) {
+        for (int i = 0; i < columnSetGenerators.length; i++)
+            columnSetGenerators[i].fill(chunk, offset, count, streams[i]);
+    }
 
-        return asList(row);
+    /**
+     * Returns streams for {@link #fill(Chunk, int, int, Random[])} that all share given random.
+     */
+    @NotNull
+    Random[] sharedStreams(@NotNull Random random) {
+        Random[] streams = new Random[columnSetGenerators.length];
+        Arrays.fill(streams, random);
+        return streams;
+    }
+
+    /**
+     * Returns an independent stream for each generator, derived from given seed, the keys
+     * and the columns of the generator. The values generated for a column therefore don't
+     * depend on the other columns of the row.
+     */
+    @NotNull
+    Random[] seededStreams(long seed, long tableKey, int chunkIndex) {
+        Random[] streams = new Random[columnSetGenerators.length];
+        for (int i = 0; i < streams.length; i++)
+            streams[i] = SplittableRandom.forKeys(seed, tableKey, chunkIndex, streamKeys[i]);
+        return streams;
     }
 
 }
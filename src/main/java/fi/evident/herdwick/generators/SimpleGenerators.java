@@ -23,7 +23,6 @@
 package fi.evident.herdwick.generators;
 
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.annotations.Nullable;
 
 import java.util.Random;
 
@@ -34,20 +33,42 @@ final class SimpleGenerators {
 
     private SimpleGenerators() { }
 
-    static final Generator<Boolean> BOOLEAN = new Generator<Boolean>() {
-        @Nullable
+    static final BooleanGenerator BOOLEAN = new BooleanGenerator() {
         @Override
-        public Boolean randomValue(@NotNull Random random) {
+        public boolean nextBoolean(@NotNull Random random) {
             return random.nextBoolean();
         }
+
+        @Override
+        public void fill(@NotNull boolean[] values, int offset, int count, @NotNull Random random) {
+            // Take 64 values from each random long instead of drawing one for each value
+            long bits = 0;
+            for (int i = 0; i < count; i++) {
+                if ((i & 63) == 0)
+                    bits = random.nextLong();
+                values[offset + i] = (bits & (1L << i)) != 0;
+            }
+        }
     };
 
-    static final Generator<Integer> INTEGER = new Generator<Integer>() {
-        @Nullable
+    static final IntGenerator INTEGER = new IntGenerator() {
         @Override
-        public Integer randomValue(@NotNull Random random) {
+        public int nextInt(@NotNull Random random) {
             return random.nextInt();
         }
+
+        @Override
+        public void fill(@NotNull int[] values, int offset, int count, @NotNull Random random) {
+            // Take two values from each random long instead of drawing one for each value
+            int i = offset;
+            for (int end = offset + count - 1; i < end; i += 2) {
+                long bits = random.nextLong();
+                values[i] = (int) bits;
+                values[i + 1] = (int) (bits >>> 32);
+            }
+            if (i < offset + count)
+                values[i] = random.nextInt();
+        }
     };
 
 }
@@ -29,27 +29,74 @@ import java.util.Random;
 
 /**
  * Generates random strings.
+ * <p>
+ * If the alphabet consists of ASCII characters, the characters are looked up from a table of bytes
+ * using several indices taken from each random long, and the strings are built directly from the
+ * bytes. In chunks, the bytes are stored as such, so that writers can copy them without creating
+ * strings at all.
  */
-final class SimpleStringGenerator implements Generator<String> {
+final class SimpleStringGenerator extends AbstractGenerator<String> {
+
+    static final String DEFAULT_ALPHABET = "abcdefghijklmnopqrstuvwxyz0123456789-_ ";
 
     private final int maxLength;
 
     @NotNull
     private final String alphabet;
 
+    /**
+     * The alphabet as bytes, or {@code null} if it contains non-ASCII characters.
+     */
+    @Nullable
+    private final byte[] asciiAlphabet;
+
+    /**
+     * Amount of bits taken from random longs for each character. Indices beyond
+     * the alphabet are discarded so that all characters are equally likely.
+     */
+    private final int bitsPerChar;
+
     SimpleStringGenerator(int maxLength) {
-        this(maxLength, "abcdefghijklmnopqrstuvwxyz0123456789-_ ");
+        this(maxLength, DEFAULT_ALPHABET);
     }
 
     SimpleStringGenerator(int maxLength, @NotNull String alphabet) {
+        if (alphabet.isEmpty()) throw new IllegalArgumentException("empty alphabet");
+
         this.maxLength = maxLength;
         this.alphabet = alphabet;
+        this.asciiAlphabet = toAscii(alphabet);
+        this.bitsPerChar = Math.max(1, 32 - Integer.numberOfLeadingZeros(alphabet.length() - 1));
+    }
+
+    @Nullable
+    private static byte[] toAscii(@NotNull String alphabet) {
+        byte[] bytes = new byte[alphabet.length()];
+        for (int i = 0; i < bytes.length; i++) {
+            char c = alphabet.charAt(i);
+            if (c >= 0x80)
+                return null;
+            bytes[i] = (byte) c;
+        }
+        return bytes;
+    }
+
+    boolean isAscii() {
+        return asciiAlphabet != null;
     }
 
     @Nullable
     @Override
+    @SuppressWarnings("deprecation")
     public String randomValue(@NotNull Random random) {
         int length = random.nextInt(maxLength);
+
+        if (asciiAlphabet != null) {
+            byte[] bytes = new byte[length];
+            new AsciiSource(random).fill(bytes, 0, length);
+            return new String(bytes, 0, 0, length);
+        }
+
         StringBuilder sb = new StringBuilder(length);
 
         for (int i = 0; i < length; i++)
@@ -57,4 +104,82 @@ final class SimpleStringGenerator implements Generator<String> {
 
         return sb.toString();
     }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public void fill(@NotNull Object[] values, int offset, int count, @NotNull Random random) {
+        if (asciiAlphabet != null) {
+            byte[] bytes = new byte[maxLength];
+            AsciiSource source = new AsciiSource(random);
+            for (int i = offset, end = offset + count; i < end; i++) {
+                int length = random.nextInt(maxLength);
+                source.fill(bytes, 0, length);
+                values[i] = new String(bytes, 0, 0, length);
+            }
+            return;
+        }
+
+        // Share a single buffer between the values instead of allocating a builder for each
+        char[] chars = new char[maxLength];
+        int alphabetSize = alphabet.length();
+
+        for (int i = offset, end = offset + count; i < end; i++) {
+            int length = random.nextInt(maxLength);
+            for (int j = 0; j < length; j++)
+                chars[j] = alphabet.charAt(random.nextInt(alphabetSize));
+            values[i] = new String(chars, 0, length);
+        }
+    }
+
+    /**
+     * Writes the bytes of random values directly into a column of a chunk. Requires an ASCII alphabet.
+     */
+    void fill(@NotNull AsciiColumn column, int offset, int count, @NotNull Random random) {
+        assert asciiAlphabet != null;
+
+        AsciiSource source = new AsciiSource(random);
+        for (int row = offset, end = offset + count; row < end; row++) {
+            int length = random.nextInt(maxLength);
+            int start = column.allocate(row, length);
+            source.fill(column.getBytes(), start, length);
+        }
+    }
+
+    /**
+     * Produces random characters of the ASCII alphabet, taking as many of them from each random long as fits.
+     */
+    private final class AsciiSource {
+
+        @NotNull
+        private final Random random;
+
+        private long bits = 0;
+        private int available = 0;
+
+        AsciiSource(@NotNull Random random) {
+            this.random = random;
+        }
+
+        void fill(@NotNull byte[] bytes, int offset, int length) {
+            byte[] table = asciiAlphabet;
+            int size = table.length;
+            int bitsPerChar = SimpleStringGenerator.this.bitsPerChar;
+            int mask = (1 << bitsPerChar) - 1;
+
+            for (int i = offset, end = offset + length; i < end; i++) {
+                int index;
+                do {
+                    if (available == 0) {
+                        bits = random.nextLong();
+                        available = 64 / bitsPerChar;
+                    }
+                    index = (int) bits & mask;
+                    bits >>>= bitsPerChar;
+                    available--;
+                } while (index >= size);
+
+                bytes[i] = table[index];
+            }
+        }
+    }
 }
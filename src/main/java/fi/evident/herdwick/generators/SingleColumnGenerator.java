@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2012 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fi.evident.herdwick.generators;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.Random;
+
+import static java.util.Collections.singletonList;
+
+/**
+ * Adapts a generator of single values to a generator of values for a set of columns containing
+ * just one column. The generator is unwrapped when rows are generated, so that primitive values
+ * are not boxed.
+ */
+public final class SingleColumnGenerator implements Generator<List<?>> {
+
+    @NotNull
+    private final Generator<?> generator;
+
+    public SingleColumnGenerator(@NotNull Generator<?> generator) {
+        this.generator = generator;
+    }
+
+    @NotNull
+    public Generator<?> getGenerator() {
+        return generator;
+    }
+
+    @NotNull
+    @Override
+    public List<?> randomValue(@NotNull Random random) {
+        return singletonList(generator.randomValue(random));
+    }
+}
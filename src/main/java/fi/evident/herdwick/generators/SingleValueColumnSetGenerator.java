@@ -37,13 +37,65 @@ final class SingleValueColumnSetGenerator implements ColumnSetGenerator {
     @NotNull
     private final Generator<?> gen;
 
+    @NotNull
+    private final ValueType type;
+
     SingleValueColumnSetGenerator(int index, @NotNull Generator<?> gen) {
         this.gen = gen;
         this.index = index;
+        this.type = typeOf(gen);
+    }
+
+    @NotNull
+    private static ValueType typeOf(@NotNull Generator<?> gen) {
+        if (gen instanceof IntGenerator)
+            return ValueType.INT;
+        else if (gen instanceof LongGenerator)
+            return ValueType.LONG;
+        else if (gen instanceof DoubleGenerator)
+            return ValueType.DOUBLE;
+        else if (gen instanceof BooleanGenerator)
+            return ValueType.BOOLEAN;
+        else if (gen instanceof SimpleStringGenerator && ((SimpleStringGenerator) gen).isAscii())
+            return ValueType.ASCII;
+        else
+            return ValueType.OBJECT;
     }
 
     @Override
-    public void generate(@NotNull Object[] row, @NotNull Random random) {
-        row[index] = gen.randomValue(random);
+    public void declareTypes(@NotNull ValueType[] types) {
+        types[index] = type;
+    }
+
+    @Override
+    public void fill(@NotNull Chunk chunk, int offset, int count, @NotNull Random random) {
+        switch (type) {
+            case INT:
+                ((IntGenerator) gen).fill(chunk.getIntColumn(index), offset, count, random);
+                break;
+            case LONG:
+                ((LongGenerator) gen).fill(chunk.getLongColumn(index), offset, count, random);
+                break;
+            case DOUBLE:
+                ((DoubleGenerator) gen).fill(chunk.getDoubleColumn(index), offset, count, random);
+                break;
+            case BOOLEAN:
+                ((BooleanGenerator) gen).fill(chunk.getBooleanColumn(index), offset, count, random);
+                break;
+            case ASCII:
+                ((SimpleStringGenerator) gen).fill(chunk.getAsciiColumn(index), offset, count, random);
+                break;
+            default:
+                Object[] values = chunk.getObjectColumn(index);
+                if (gen instanceof AbstractGenerator<?>) {
+                    ((AbstractGenerator<?>) gen).fill(values, offset, count, random);
+                } else {
+                    for (int row = offset, end = offset + count; row < end; row++)
+                        values[row] = gen.randomValue(random);
+                }
+                return;
+        }
+
+        chunk.clearNulls(index, offset, count);
     }
 }
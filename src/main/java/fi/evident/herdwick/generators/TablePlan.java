@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2012 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fi.evident.herdwick.generators;
+
+import fi.evident.dalesbred.SQL;
+import fi.evident.herdwick.model.Column;
+import fi.evident.herdwick.model.Table;
+import fi.evident.herdwick.model.UniqueConstraint;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static fi.evident.herdwick.generators.UniqueConstraintVerifier.*;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.unmodifiableList;
+
+/**
+ * Immutable description of how rows are generated for a table: the generated columns, the unique
+ * constraints to verify and their column indices, and once compiled by {@link DataGenerator}, the
+ * generators for the columns and the statement for inserting a single row. Compiled plans can be
+ * reused for any number of {@link Batch}es, so that the setup is done only once.
+ *
+ * @see DataGenerator#compilePlan(Table, UniqueVerification, boolean)
+ */
+public final class TablePlan {
+
+    @NotNull
+    private final Table table;
+
+    @NotNull
+    private final UniqueVerification uniqueVerification;
+
+    private final boolean preallocateKeys;
+
+    @Nullable
+    private final Column preallocatedKeyColumn;
+
+    @NotNull
+    private final List<Column> columns;
+
+    @NotNull
+    private final List<Column> keyColumns;
+
+    @NotNull
+    private final List<UniqueConstraint> uniqueConstraints;
+
+    /**
+     * Verifiers without any keys, copied for each batch.
+     */
+    @NotNull
+    private final List<UniqueConstraintVerifier> verifierTemplates;
+
+    @Nullable
+    private final RowGenerator rowGenerator;
+
+    @Nullable
+    private final String insert;
+
+    /**
+     * Constructs a plan that describes the columns and constraints of the table, but has no generators.
+     * If keys are preallocated and the table has a single auto-increment column of integer type, the
+     * column is added as the last of the generated columns.
+     */
+    TablePlan(@NotNull Table table, @NotNull UniqueVerification uniqueVerification, boolean preallocateKeys) {
+        if (preallocateKeys && uniqueVerification != UniqueVerification.CLIENT)
+            throw new IllegalArgumentException("keys can be preallocated only with client-side verification of unique constraints");
+
+        this.table = table;
+        this.uniqueVerification = uniqueVerification;
+        this.preallocateKeys = preallocateKeys;
+        this.preallocatedKeyColumn = preallocateKeys ? table.getIntegerAutoIncrementColumn() : null;
+
+        // Preallocated keys are unique by construction, so constraints involving them are not verified
+        List<Column> verifiedColumns = table.getNonAutoIncrementColumns();
+        this.keyColumns = keyColumnsFor(table, verifiedColumns);
+        this.uniqueConstraints = applicableConstraints(table, verifiedColumns);
+
+        if (preallocatedKeyColumn != null) {
+            List<Column> columns = new ArrayList<Column>(verifiedColumns);
+            columns.add(preallocatedKeyColumn);
+            this.columns = columns;
+        } else {
+            this.columns = verifiedColumns;
+        }
+
+        // Otherwise the database verifies the rows, and at most the rows of the current chunk are checked
+        if (uniqueVerification == UniqueVerification.CLIENT)
+            this.verifierTemplates = createUniqueConstraintVerifiers(table, verifiedColumns);
+        else
+            this.verifierTemplates = emptyList();
+
+        this.rowGenerator = null;
+        this.insert = null;
+    }
+
+    private TablePlan(@NotNull TablePlan plan, @NotNull RowGenerator rowGenerator, @NotNull String insert) {
+        this.table = plan.table;
+        this.uniqueVerification = plan.uniqueVerification;
+        this.preallocateKeys = plan.preallocateKeys;
+        this.preallocatedKeyColumn = plan.preallocatedKeyColumn;
+        this.columns = plan.columns;
+        this.keyColumns = plan.keyColumns;
+        this.uniqueConstraints = plan.uniqueConstraints;
+        this.verifierTemplates = plan.verifierTemplates;
+        this.rowGenerator = rowGenerator;
+        this.insert = insert;
+    }
+
+    /**
+     * Returns a copy of this plan with given generator and insert statement.
+     */
+    @NotNull
+    TablePlan compiled(@NotNull RowGenerator rowGenerator, @NotNull @SQL String insert) {
+        return new TablePlan(this, rowGenerator, insert);
+    }
+
+    /**
+     * Returns new verifiers for the unique constraints, not containing any keys yet.
+     */
+    @NotNull
+    List<UniqueConstraintVerifier> createVerifiers() {
+        List<UniqueConstraintVerifier> verifiers = new ArrayList<UniqueConstraintVerifier>(verifierTemplates.size());
+        for (UniqueConstraintVerifier template : verifierTemplates)
+            verifiers.add(template.emptyCopy());
+        return verifiers;
+    }
+
+    @Nullable
+    RowGenerator getRowGenerator() {
+        return rowGenerator;
+    }
+
+    /**
+     * Returns the statement for inserting a single row, or {@code null} if the plan has not been compiled.
+     */
+    @SQL
+    @Nullable
+    public String getInsert() {
+        return insert;
+    }
+
+    @NotNull
+    public Table getTable() {
+        return table;
+    }
+
+    @NotNull
+    public UniqueVerification getUniqueVerification() {
+        return uniqueVerification;
+    }
+
+    /**
+     * Returns whether keys were requested to be preallocated, regardless of whether the table has
+     * a column for them.
+     */
+    public boolean isPreallocateKeys() {
+        return preallocateKeys;
+    }
+
+    @Nullable
+    public Column getPreallocatedKeyColumn() {
+        return preallocatedKeyColumn;
+    }
+
+    @NotNull
+    public List<Column> getColumns() {
+        return unmodifiableList(columns);
+    }
+
+    @NotNull
+    public List<Column> getKeyColumns() {
+        return unmodifiableList(keyColumns);
+    }
+
+    @NotNull
+    public List<UniqueConstraint> getUniqueConstraints() {
+        return unmodifiableList(uniqueConstraints);
+    }
+}
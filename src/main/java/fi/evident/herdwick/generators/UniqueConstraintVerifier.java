@@ -26,48 +26,125 @@ import fi.evident.herdwick.model.Column;
 import fi.evident.herdwick.model.Table;
 import fi.evident.herdwick.model.UniqueConstraint;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.List;
+import java.util.*;
 
-import static fi.evident.herdwick.utils.ObjectUtils.nullSafeEquals;
+import static java.util.Arrays.asList;
 
+/**
+ * Verifies that rows satisfy a single unique constraint. Keys of all the rows
+ * seen so far are kept in a hash set so that each check takes constant time.
+ */
 final class UniqueConstraintVerifier {
 
+    /**
+     * Indices of the constraint's columns in generated rows.
+     */
     @NotNull
     private final int[] indices;
 
-    UniqueConstraintVerifier(@NotNull int[] indices) {
+    /**
+     * Indices of the constraint's columns in rows containing only key columns.
+     *
+     * @see #keyColumnsFor(Table, List)
+     */
+    @NotNull
+    private final int[] keyIndices;
+
+    @NotNull
+    private final Set<Object> keys = new HashSet<Object>();
+
+    UniqueConstraintVerifier(@NotNull int[] indices, @NotNull int[] keyIndices) {
+        assert indices.length == keyIndices.length;
+
         this.indices = indices;
+        this.keyIndices = keyIndices;
     }
 
-    boolean satisfies(@NotNull Iterable<List<?>> existingRows, @NotNull Iterable<List<?>> rowsToInsert, @NotNull List<?> candidateRow) {
-        return satisfies(existingRows, candidateRow) && satisfies(rowsToInsert, candidateRow);
+    /**
+     * Returns a verifier for the same columns, but without any keys.
+     */
+    @NotNull
+    UniqueConstraintVerifier emptyCopy() {
+        return new UniqueConstraintVerifier(indices, keyIndices);
     }
 
-    boolean satisfies(@NotNull Iterable<? extends List<?>> existingRows, @NotNull List<?> candidate) {
-        for (List<?> existingRow : existingRows)
-            if (matches(existingRow, candidate))
-                return false;
-        return true;
+    boolean satisfies(@NotNull List<?> candidate) {
+        return !keys.contains(keyFor(candidate, indices));
+    }
+
+    void add(@NotNull List<?> row) {
+        keys.add(keyFor(row, indices));
     }
 
-    private boolean matches(@NotNull List<?> row1, @NotNull List<?> row2) {
-        for (int index : indices)
-            if (!nullSafeEquals(row1.get(index), row2.get(index)))
+    void addExisting(@NotNull List<?> keyRow) {
+        keys.add(keyFor(keyRow, keyIndices));
+    }
+
+    @Nullable
+    private static Object keyFor(@NotNull List<?> row, @NotNull int[] indices) {
+        if (indices.length == 1)
+            return row.get(indices[0]);
+
+        Object[] key = new Object[indices.length];
+        for (int i = 0; i < indices.length; i++)
+            key[i] = row.get(indices[i]);
+        return asList(key);
+    }
+
+    static boolean satisfiesAll(@NotNull List<UniqueConstraintVerifier> verifiers, @NotNull List<?> candidate) {
+        for (UniqueConstraintVerifier verifier : verifiers)
+            if (!verifier.satisfies(candidate))
                 return false;
+
         return true;
     }
 
+    static void addToAll(@NotNull List<UniqueConstraintVerifier> verifiers, @NotNull List<?> row) {
+        for (UniqueConstraintVerifier verifier : verifiers)
+            verifier.add(row);
+    }
+
+    @NotNull
     static List<UniqueConstraintVerifier> createUniqueConstraintVerifiers(@NotNull Table table, @NotNull List<Column> columns) {
+        List<Column> keyColumns = keyColumnsFor(table, columns);
+        List<UniqueConstraint> constraints = applicableConstraints(table, columns);
+        List<UniqueConstraintVerifier> result = new ArrayList<UniqueConstraintVerifier>(constraints.size());
+        for (UniqueConstraint constraint : constraints)
+            result.add(new UniqueConstraintVerifier(columnIndicesFor(constraint, columns), columnIndicesFor(constraint, keyColumns)));
+        return result;
+    }
+
+    /**
+     * Returns the columns that belong to the constraints that need to be verified,
+     * in the order they appear in {@code columns}.
+     */
+    @NotNull
+    static List<Column> keyColumnsFor(@NotNull Table table, @NotNull List<Column> columns) {
+        Set<Column> constrainedColumns = new HashSet<Column>();
+        for (UniqueConstraint constraint : applicableConstraints(table, columns))
+            constrainedColumns.addAll(constraint.getColumns());
+
+        List<Column> result = new ArrayList<Column>(constrainedColumns.size());
+        for (Column column : columns)
+            if (constrainedColumns.contains(column))
+                result.add(column);
+        return result;
+    }
+
+    /**
+     * Returns the unique constraints that can be verified for rows consisting of given columns.
+     */
+    @NotNull
+    static List<UniqueConstraint> applicableConstraints(@NotNull Table table, @NotNull List<Column> columns) {
         Collection<UniqueConstraint> uniqueConstraints = table.getUniqueConstraints();
-        List<UniqueConstraintVerifier> result = new ArrayList<UniqueConstraintVerifier>(uniqueConstraints.size());
+        List<UniqueConstraint> result = new ArrayList<UniqueConstraint>(uniqueConstraints.size());
         for (UniqueConstraint constraint : uniqueConstraints) {
             // If this constraint is for a column that we're not generating in this batch
             // (e.g. constraint for auto-generated primary key), we're not interested.
             if (columns.containsAll(constraint.getColumns()))
-                result.add(new UniqueConstraintVerifier(columnIndicesFor(constraint, columns)));
+                result.add(constraint);
         }
         return result;
     }
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2012 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fi.evident.herdwick.generators;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates distinct integers in pseudo-random order by permuting a counter.
+ * After all 2<sup>32</sup> integers have been generated, the sequence repeats.
+ */
+final class UniqueIntegerGenerator extends IntGenerator {
+
+    @NotNull
+    private final KeyedPermutation permutation;
+
+    @NotNull
+    private final AtomicLong counter = new AtomicLong();
+
+    UniqueIntegerGenerator(@NotNull Random random) {
+        this.permutation = new KeyedPermutation(1L << 32, random);
+    }
+
+    @Override
+    public int nextInt(@NotNull Random random) {
+        long value = permutation.permute(counter.getAndIncrement() % permutation.size());
+        return (int) value;
+    }
+
+    @Override
+    public void fill(@NotNull int[] values, int offset, int count, @NotNull Random random) {
+        // Reserve the whole block of counter values at once
+        long first = counter.getAndAdd(count);
+        for (int i = 0; i < count; i++)
+            values[offset + i] = (int) permutation.permute((first + i) % permutation.size());
+    }
+}
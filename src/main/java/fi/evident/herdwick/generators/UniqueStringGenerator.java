@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2012 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fi.evident.herdwick.generators;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static fi.evident.herdwick.generators.SimpleStringGenerator.DEFAULT_ALPHABET;
+
+/**
+ * Generates distinct strings shorter than {@code maxLength}. The strings are produced by
+ * permuting a counter and writing the result as a bijective base-n numeral, where n is the
+ * size of the alphabet. After all possible strings have been generated, the sequence repeats.
+ */
+final class UniqueStringGenerator extends AbstractGenerator<String> {
+
+    private final int maxLength;
+
+    @NotNull
+    private final String alphabet;
+
+    @NotNull
+    private final KeyedPermutation permutation;
+
+    @NotNull
+    private final AtomicLong counter = new AtomicLong();
+
+    UniqueStringGenerator(int maxLength, @NotNull Random random) {
+        this(maxLength, DEFAULT_ALPHABET, random);
+    }
+
+    UniqueStringGenerator(int maxLength, @NotNull String alphabet, @NotNull Random random) {
+        if (maxLength <= 0) throw new IllegalArgumentException("non-positive max-length: " + maxLength);
+        if (alphabet.isEmpty()) throw new IllegalArgumentException("empty alphabet");
+
+        this.maxLength = maxLength;
+        this.alphabet = alphabet;
+        this.permutation = new KeyedPermutation(capacity(maxLength, alphabet.length()), random);
+    }
+
+    /**
+     * Returns the amount of strings shorter than {@code maxLength}, or {@link KeyedPermutation#MAX_SIZE}
+     * if there are more of them.
+     */
+    private static long capacity(int maxLength, int alphabetSize) {
+        long capacity = 0;
+        long stringsOfLength = 1;
+
+        for (int length = 0; length < maxLength; length++) {
+            capacity += stringsOfLength;
+            if (capacity >= KeyedPermutation.MAX_SIZE || stringsOfLength > KeyedPermutation.MAX_SIZE / alphabetSize)
+                return KeyedPermutation.MAX_SIZE;
+            stringsOfLength *= alphabetSize;
+        }
+
+        return capacity;
+    }
+
+    @NotNull
+    @Override
+    public String randomValue(@NotNull Random random) {
+        long value = permutation.permute(counter.getAndIncrement() % permutation.size());
+        return encode(value);
+    }
+
+    @Override
+    public void fill(@NotNull Object[] values, int offset, int count, @NotNull Random random) {
+        // Reserve the whole block of counter values at once and share the buffer between the values
+        long first = counter.getAndAdd(count);
+        char[] chars = new char[maxLength];
+        for (int i = 0; i < count; i++)
+            values[offset + i] = encode(permutation.permute((first + i) % permutation.size()), chars);
+    }
+
+    @NotNull
+    private String encode(long value) {
+        return encode(value, new char[maxLength]);
+    }
+
+    @NotNull
+    private String encode(long value, @NotNull char[] chars) {
+        int base = alphabet.length();
+        int start = chars.length;
+
+        for (long n = value; n > 0; n = (n - 1) / base)
+            chars[--start] = alphabet.charAt((int) ((n - 1) % base));
+
+        return new String(chars, start, chars.length - start);
+    }
+}
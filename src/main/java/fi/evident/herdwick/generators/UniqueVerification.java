@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2012 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fi.evident.herdwick.generators;
+
+/**
+ * Strategies for making sure that inserted rows satisfy the unique constraints of the table.
+ */
+public enum UniqueVerification {
+
+    /**
+     * The keys of existing rows and all generated rows are kept in memory and each generated
+     * row is checked against them before insertion. This is the fastest strategy as long as
+     * the keys fit comfortably in memory.
+     */
+    CLIENT,
+
+    /**
+     * Only the keys of the chunk being generated are kept in memory. Each chunk is inserted into
+     * a temporary table, from which the rows not conflicting with existing rows are copied into
+     * the target table with a single statement, so that the database uses its own indices for
+     * checking the constraints. Rejected rows are replaced by generating more rows. This keeps the
+     * memory usage constant regardless of the size of the table. Temporary tables are database
+     * specific, so this is supported only on PostgreSQL and HSQLDB.
+     */
+    DATABASE,
+
+    /**
+     * No keys are kept in memory and generated rows are not checked at all. Instead, rows are inserted
+     * with statements that skip the rows violating unique constraints, and the skipped rows are replaced
+     * by generating more rows. This is the fastest strategy when collisions are rare, e.g. when the unique
+     * columns have a large amount of possible values. Statements skipping conflicting rows are database
+     * specific, so this is supported only on PostgreSQL and HSQLDB.
+     */
+    OPTIMISTIC
+}
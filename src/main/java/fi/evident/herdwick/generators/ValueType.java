@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2012 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fi.evident.herdwick.generators;
+
+/**
+ * Types of values that a {@link Row} stores without boxing.
+ */
+public enum ValueType {
+
+    /**
+     * Value is stored as an object reference, possibly {@code null}.
+     */
+    OBJECT,
+
+    /**
+     * Value is stored as a primitive {@code int}.
+     */
+    INT,
+
+    /**
+     * Value is stored as a primitive {@code long}.
+     */
+    LONG,
+
+    /**
+     * Value is stored as a primitive {@code double}.
+     */
+    DOUBLE,
+
+    /**
+     * Value is stored as a primitive {@code boolean}.
+     */
+    BOOLEAN,
+
+    /**
+     * Value is a string of ASCII characters, stored as bytes in a buffer shared by the column.
+     */
+    ASCII
+}
@@ -26,6 +26,7 @@ import fi.evident.herdwick.generators.Generator;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.sql.Types;
 import java.util.*;
 
 import static java.util.Collections.*;
@@ -69,6 +70,38 @@ public final class Table {
         return unmodifiableList(result);
     }
 
+    @NotNull
+    public List<Column> getAutoIncrementColumns() {
+        List<Column> result = new ArrayList<Column>(1);
+        for (Column column : columns)
+            if (column.isAutoIncrement())
+                result.add(column);
+
+        return unmodifiableList(result);
+    }
+
+    /**
+     * Returns the auto-increment column of the table if there is exactly one and it is of integer type,
+     * so that its values can be handled as longs. Otherwise returns {@code null}.
+     */
+    @Nullable
+    public Column getIntegerAutoIncrementColumn() {
+        List<Column> autoIncrementColumns = getAutoIncrementColumns();
+        if (autoIncrementColumns.size() != 1)
+            return null;
+
+        Column column = autoIncrementColumns.get(0);
+        switch (column.getDataType()) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+                return column;
+            default:
+                return null;
+        }
+    }
+
     @NotNull
     public Collection<UniqueConstraint> getUniqueConstraints() {
         return unmodifiableCollection(uniqueConstraints);
@@ -25,7 +25,11 @@ package fi.evident.herdwick;
 import fi.evident.dalesbred.Database;
 import fi.evident.dalesbred.junit.TestDatabaseProvider;
 import fi.evident.dalesbred.junit.TransactionalTests;
+import fi.evident.herdwick.generators.BooleanGenerator;
+import fi.evident.herdwick.generators.DoubleGenerator;
 import fi.evident.herdwick.generators.Generator;
+import fi.evident.herdwick.generators.IntGenerator;
+import fi.evident.herdwick.generators.LongGenerator;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.junit.Rule;
@@ -71,4 +75,59 @@ public class PopulatorCustomGeneratorTest {
         for (int i = 0; i < values.size(); i++)
             assertThat(values.get(i), is("value " + i));
     }
+
+    @Test
+    public void generatorRegisteredAfterPopulatingIsUsed() {
+        db.update("drop table if exists my_table");
+        db.update("create table my_table (id serial primary key, my_column varchar(128) not null)");
+
+        populator.populate("my_table", 10);
+
+        populator.registerGeneratorForColumn("my_table", "my_column", new Generator<String>() {
+            @Nullable
+            @Override
+            public String randomValue(@NotNull Random random) {
+                return "custom";
+            }
+        });
+
+        populator.populate("my_table", 10);
+
+        assertThat(db.findUniqueInt("select count(*) from my_table where my_column = 'custom'"), is(10));
+    }
+
+    @Test
+    public void primitiveGeneratorsForColumns() {
+        db.update("drop table if exists my_table");
+        db.update("create table my_table (id serial primary key, i int not null, l bigint not null, d double not null, b boolean not null)");
+
+        populator.registerGeneratorForColumn("my_table", "i", new IntGenerator() {
+            @Override
+            public int nextInt(@NotNull Random random) {
+                return 42;
+            }
+        });
+        populator.registerGeneratorForColumn("my_table", "l", new LongGenerator() {
+            @Override
+            public long nextLong(@NotNull Random random) {
+                return Long.MAX_VALUE;
+            }
+        });
+        populator.registerGeneratorForColumn("my_table", "d", new DoubleGenerator() {
+            @Override
+            public double nextDouble(@NotNull Random random) {
+                return 0.5;
+            }
+        });
+        populator.registerGeneratorForColumn("my_table", "b", new BooleanGenerator() {
+            @Override
+            public boolean nextBoolean(@NotNull Random random) {
+                return true;
+            }
+        });
+
+        populator.populate("my_table", 10);
+
+        assertThat(db.findUniqueInt("select count(*) from my_table where i = 42 and l = ? and d = 0.5 and b", Long.MAX_VALUE), is(10));
+    }
 }
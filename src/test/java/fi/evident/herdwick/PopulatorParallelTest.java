@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2012 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fi.evident.herdwick;
+
+import fi.evident.dalesbred.Database;
+import fi.evident.dalesbred.junit.TestDatabaseProvider;
+import fi.evident.dalesbred.junit.TransactionalTests;
+import fi.evident.herdwick.model.Name;
+import org.hsqldb.jdbc.JDBCDataSource;
+import org.junit.Rule;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class PopulatorParallelTest {
+
+    private final Database db = TestDatabaseProvider.databaseForProperties("hsqldb-connection.properties");
+
+    private final Populator populator = new Populator(db);
+
+    @Rule
+    public final TransactionalTests transactionalTests = new TransactionalTests(db);
+
+    private final DataSource dataSource = createDataSource();
+
+    @Test
+    public void populateWithMultipleWorkers() {
+        db.update("drop table if exists foo");
+        db.update("create table foo (id serial primary key, name varchar(10) not null unique, counter int not null)");
+
+        populator.setChunkSize(100);
+
+        assertThat(populator.populate("foo", 1000, dataSource, 4), is(1000));
+
+        assertThat(count("foo"), is(1000));
+        assertThat(db.findUniqueInt("select count(distinct name) from foo"), is(1000));
+    }
+
+    @Test
+    public void workersGetChunksEvenIfChunkSizeIsNotSpecified() {
+        db.update("drop table if exists foo");
+        db.update("create table foo (id serial primary key, name varchar(10) not null unique)");
+
+        assertThat(populator.populate("foo", 10, dataSource, 4), is(10));
+
+        assertThat(count("foo"), is(10));
+    }
+
+    @Test
+    public void uniqueConstraintsAreSharedByWorkers() {
+        db.update("drop table if exists table_with_only_two_possible_rows");
+        db.update("create table table_with_only_two_possible_rows (flag boolean primary key)");
+
+        assertThat(populator.populate("table_with_only_two_possible_rows", 10, dataSource, 4), is(2));
+
+        assertThat(count("table_with_only_two_possible_rows"), is(2));
+    }
+
+    @Test
+    public void populateAllWithMultipleTableThreads() {
+        db.update("drop table if exists emp");
+        db.update("drop table if exists dept");
+        db.update("drop table if exists foo");
+        db.update("create table dept (id serial primary key, name varchar(10) not null)");
+        db.update("create table emp (id serial primary key, name varchar(10) not null, dept_id int references dept not null)");
+        db.update("create table foo (id serial primary key, name varchar(10) not null unique)");
+
+        Map<Name, Integer> counts = new HashMap<Name, Integer>();
+        counts.put(new Name("public", "emp"), 200);
+        counts.put(new Name("public", "dept"), 10);
+        counts.put(new Name("public", "foo"), 100);
+
+        populator.setTableThreads(3);
+        Map<Name, Integer> result = populator.populateAll(counts);
+
+        assertThat(result.get(new Name("public", "emp")), is(200));
+        assertThat(count("dept"), is(10));
+        assertThat(count("emp"), is(200));
+        assertThat(count("foo"), is(100));
+    }
+
+    @Test
+    public void populateAllStreamingCapturedKeys() {
+        db.update("drop table if exists order_line");
+        db.update("drop table if exists orders");
+        db.update("drop table if exists customer");
+        db.update("create table customer (id serial primary key, name varchar(10) not null)");
+        db.update("create table orders (id serial primary key, customer_id int references customer not null)");
+        db.update("create table order_line (id serial primary key, order_id int references orders not null, amount int)");
+
+        Map<Name, Integer> counts = new HashMap<Name, Integer>();
+        counts.put(new Name("public", "customer"), 100);
+        counts.put(new Name("public", "orders"), 300);
+        counts.put(new Name("public", "order_line"), 1000);
+
+        populator.setChunkSize(10);
+        populator.setTableThreads(3);
+        populator.setCaptureGeneratedKeys(true);
+        populator.setStreamCapturedKeys(true);
+
+        Map<Name, Integer> result = populator.populateAll(counts);
+
+        assertThat(result.get(new Name("public", "order_line")), is(1000));
+        assertThat(count("customer"), is(100));
+        assertThat(count("orders"), is(300));
+        assertThat(count("order_line"), is(1000));
+    }
+
+    /**
+     * Creates a data source for the same database as the other tests use.
+     */
+    private static DataSource createDataSource() {
+        Properties properties = new Properties();
+        InputStream in = PopulatorParallelTest.class.getClassLoader().getResourceAsStream("hsqldb-connection.properties");
+        if (in == null) throw new IllegalStateException("could not find hsqldb-connection.properties");
+        try {
+            try {
+                properties.load(in);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("failed to load hsqldb-connection.properties", e);
+        }
+
+        JDBCDataSource dataSource = new JDBCDataSource();
+        dataSource.setUrl(properties.getProperty("jdbc.url"));
+        dataSource.setUser(properties.getProperty("jdbc.login"));
+        dataSource.setPassword(properties.getProperty("jdbc.password", ""));
+        return dataSource;
+    }
+
+    private int count(String table) {
+        return db.findUniqueInt("select count(*) from " + table);
+    }
+}
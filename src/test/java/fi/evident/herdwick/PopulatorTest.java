@@ -25,11 +25,22 @@ package fi.evident.herdwick;
 import fi.evident.dalesbred.Database;
 import fi.evident.dalesbred.junit.TestDatabaseProvider;
 import fi.evident.dalesbred.junit.TransactionalTests;
+import fi.evident.herdwick.generators.UniqueVerification;
+import fi.evident.herdwick.model.Name;
 import org.junit.Rule;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonMap;
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class PopulatorTest {
 
@@ -94,6 +105,77 @@ public class PopulatorTest {
         assertThat(count("emp"), is(100));
     }
 
+    @Test
+    public void referencesSeeRowsAddedAfterPreviousPopulate() {
+        db.update("drop table if exists emp");
+        db.update("drop table if exists dept");
+        db.update("create table dept (id int primary key)");
+        db.update("create table emp (id serial primary key, dept_id int references dept not null)");
+
+        populator.populate("dept", 5);
+        populator.populate("emp", 10);
+        populator.populate("dept", 5);
+        populator.populate("emp", 200);
+
+        assertThat(count("emp"), is(210));
+        assertThat(db.findUniqueInt("select count(distinct dept_id) from emp"), is(10));
+    }
+
+    @Test
+    public void populateForeignKeysUsingBoundedReferencePool() {
+        db.update("drop table if exists emp");
+        db.update("drop table if exists dept");
+        db.update("create table dept (id serial primary key, name varchar(10) not null)");
+        db.update("create table emp (id serial primary key, name varchar(10) not null, dept_id int references dept not null)");
+
+        populator.populate("dept", 100);
+
+        populator.setDenseReferenceThreshold(2);
+        populator.setReferencePoolSize(5);
+        populator.populate("emp", 100);
+
+        assertThat(count("emp"), is(100));
+        assertTrue(db.findUniqueInt("select count(distinct dept_id) from emp") <= 5);
+    }
+
+    @Test
+    public void populateForeignKeysToDenseRangeWithGaps() {
+        db.update("drop table if exists emp");
+        db.update("drop table if exists dept");
+        db.update("create table dept (id int primary key)");
+        db.update("create table emp (id serial primary key, dept_id int references dept not null)");
+
+        for (int id = 1; id <= 100; id++)
+            if (id % 20 != 0)
+                db.update("insert into dept (id) values (?)", id);
+
+        populator.populate("emp", 1000);
+
+        assertThat(count("emp"), is(1000));
+        assertThat(db.findUniqueInt("select count(*) from emp where mod(dept_id, 20) = 0"), is(0));
+    }
+
+    @Test
+    public void populateForeignKeysWithoutDenseRanges() {
+        db.update("drop table if exists emp");
+        db.update("drop table if exists dept");
+        db.update("create table dept (id int primary key)");
+        db.update("create table emp (id serial primary key, dept_id int references dept not null)");
+
+        db.update("insert into dept (id) values (1)");
+        db.update("insert into dept (id) values (1000000)");
+
+        populator.setDenseReferenceThreshold(2);
+        populator.populate("emp", 100);
+
+        assertThat(count("emp"), is(100));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void referencePoolSizeMustNotBeNegative() {
+        populator.setReferencePoolSize(-1);
+    }
+
     @Test
     public void multiColumnUnique() {
         db.update("drop table if exists foo");
@@ -159,6 +241,355 @@ public class PopulatorTest {
         assertThat(count("foo"), is(2));
     }
 
+    @Test
+    public void takeExistingDataOfCompositeConstraintsIntoAccount() {
+        db.update("drop table if exists foo");
+        db.update("create table foo (id serial primary key, note varchar(10), a boolean not null, x int, b boolean not null, unique (b, a))");
+
+        db.update("insert into foo (note, a, x, b) values ('foo', false, 1, false)");
+        db.update("insert into foo (note, a, x, b) values ('bar', true, 2, false)");
+        db.update("insert into foo (note, a, x, b) values ('baz', false, 3, true)");
+
+        assertThat(populator.populate("foo", 10), is(1));
+
+        assertThat(db.findUniqueInt("select count(*) from foo where a and b"), is(1));
+    }
+
+    @Test
+    public void verifyUniqueConstraintsInDatabase() {
+        db.update("drop table if exists foo");
+        db.update("create table foo (id serial primary key, note varchar(10), a boolean not null, b boolean not null, unique (a, b))");
+
+        db.update("insert into foo (note, a, b) values ('foo', false, false)");
+
+        populator.setUniqueVerification(UniqueVerification.DATABASE);
+        populator.setChunkSize(2);
+
+        assertThat(populator.populate("foo", 10), is(3));
+
+        assertThat(count("foo"), is(4));
+        assertThat(db.findUniqueInt("select count(*) from foo where a and b"), is(1));
+    }
+
+    @Test
+    public void verifyUniqueConstraintsInDatabaseWithGeneratorThreads() {
+        db.update("drop table if exists foo");
+        db.update("create table foo (id serial primary key, name varchar(20) not null unique, x int unique)");
+
+        populator.setUniqueVerification(UniqueVerification.DATABASE);
+        populator.setChunkSize(10);
+        populator.setGeneratorThreads(2);
+
+        assertThat(populator.populate("foo", 100), is(100));
+        assertThat(populator.populate("foo", 100), is(100));
+
+        assertThat(count("foo"), is(200));
+    }
+
+    @Test
+    public void optimisticUniqueVerification() {
+        db.update("drop table if exists foo");
+        db.update("create table foo (id serial primary key, note varchar(10), a boolean not null, b boolean not null, unique (a, b))");
+
+        db.update("insert into foo (note, a, b) values ('foo', false, false)");
+
+        populator.setUniqueVerification(UniqueVerification.OPTIMISTIC);
+        populator.setChunkSize(5);
+
+        assertThat(populator.populate("foo", 10), is(3));
+
+        assertThat(count("foo"), is(4));
+        assertThat(db.findUniqueInt("select count(*) from foo where a and b"), is(1));
+    }
+
+    @Test
+    public void optimisticUniqueVerificationOfMultipleConstraints() {
+        db.update("drop table if exists foo");
+        db.update("create table foo (id serial primary key, name varchar(20) not null unique, x int unique)");
+
+        populator.setUniqueVerification(UniqueVerification.OPTIMISTIC);
+        populator.setChunkSize(30);
+
+        assertThat(populator.populate("foo", 100), is(100));
+        assertThat(populator.populate("foo", 100), is(100));
+
+        assertThat(count("foo"), is(200));
+    }
+
+    @Test
+    public void populateAllPopulatesReferencedTablesFirst() {
+        db.update("drop table if exists emp");
+        db.update("drop table if exists dept");
+        db.update("drop table if exists foo");
+        db.update("create table dept (id serial primary key, name varchar(10) not null)");
+        db.update("create table emp (id serial primary key, name varchar(10) not null, dept_id int references dept not null)");
+        db.update("create table foo (id serial primary key, name varchar(10) not null)");
+
+        Map<Name, Integer> counts = new LinkedHashMap<Name, Integer>();
+        counts.put(new Name("public", "emp"), 20);
+        counts.put(new Name("public", "foo"), 5);
+        counts.put(new Name("public", "dept"), 10);
+
+        Map<Name, Integer> result = populator.populateAll(counts);
+
+        assertThat(new ArrayList<Name>(result.keySet()), is(asList(new Name("public", "dept"), new Name("public", "emp"), new Name("public", "foo"))));
+        assertThat(new ArrayList<Integer>(result.values()), is(asList(10, 20, 5)));
+        assertThat(count("emp"), is(20));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void populateAllRejectsSelfReferences() {
+        db.update("drop table if exists emp");
+        db.update("create table emp (id serial primary key, manager_id int references emp)");
+
+        populator.populateAll(singletonMap(new Name("public", "emp"), 10));
+    }
+
+    @Test
+    public void populateAllRejectsReferenceCycles() {
+        db.update("drop table if exists cycle_b");
+        db.update("drop table if exists cycle_a");
+        db.update("create table cycle_a (id int primary key, b_id int)");
+        db.update("create table cycle_b (id int primary key, a_id int references cycle_a)");
+        db.update("alter table cycle_a add foreign key (b_id) references cycle_b");
+
+        Map<Name, Integer> counts = new LinkedHashMap<Name, Integer>();
+        counts.put(new Name("public", "cycle_a"), 10);
+        counts.put(new Name("public", "cycle_b"), 10);
+
+        try {
+            populator.populateAll(counts);
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("CYCLE_A -> PUBLIC.CYCLE_B -> PUBLIC.CYCLE_A"));
+        }
+
+        assertThat(count("cycle_a"), is(0));
+    }
+
+    @Test
+    public void referencesUseCapturedKeys() {
+        db.update("drop table if exists emp");
+        db.update("drop table if exists dept");
+        db.update("create table dept (id serial primary key, name varchar(10) not null)");
+        db.update("create table emp (id serial primary key, name varchar(10) not null, dept_id int references dept not null)");
+
+        db.update("insert into dept (name) values ('existing')");
+        int existingId = db.findUniqueInt("select id from dept");
+
+        populator.setCaptureGeneratedKeys(true);
+        populator.setRowsPerStatement(3);
+
+        populator.populate("dept", 10);
+        populator.populate("emp", 50);
+
+        assertThat(count("emp"), is(50));
+        assertThat(db.findUniqueInt("select count(*) from emp where dept_id = ?", existingId), is(0));
+        assertThat(db.findUniqueInt("select count(*) from emp where dept_id not in (select id from dept)"), is(0));
+    }
+
+    @Test
+    public void preallocatedKeysDontConflictWithGeneratedKeys() {
+        db.update("drop table if exists foo");
+        db.update("create table foo (id serial primary key, name varchar(10) not null)");
+
+        db.update("insert into foo (name) values ('before')");
+
+        populator.setPreallocateKeys(true);
+        populator.setChunkSize(7);
+
+        assertThat(populator.populate("foo", 20), is(20));
+
+        db.update("insert into foo (name) values ('after')");
+
+        assertThat(count("foo"), is(22));
+        assertThat(db.findUniqueInt("select count(distinct id) from foo"), is(22));
+        assertThat(db.findUniqueInt("select max(id) from foo where name = 'after'"), is(22));
+    }
+
+    @Test
+    public void preallocatedKeysAreCaptured() {
+        db.update("drop table if exists emp");
+        db.update("drop table if exists dept");
+        db.update("create table dept (id serial primary key, name varchar(10) not null unique)");
+        db.update("create table emp (id serial primary key, name varchar(10) not null, dept_id int references dept not null)");
+
+        db.update("insert into dept (name) values ('existing')");
+        int existingId = db.findUniqueInt("select id from dept");
+
+        populator.setPreallocateKeys(true);
+        populator.setCaptureGeneratedKeys(true);
+
+        populator.populate("dept", 10);
+        populator.populate("emp", 50);
+
+        assertThat(count("emp"), is(50));
+        assertThat(db.findUniqueInt("select count(*) from emp where dept_id = ?", existingId), is(0));
+        assertThat(db.findUniqueInt("select count(*) from emp where dept_id not in (select id from dept)"), is(0));
+    }
+
+    @Test
+    public void uniqueValuesByConstructionFillAllPossibleValues() {
+        db.update("drop table if exists foo");
+        db.update("create table foo (name varchar(3) primary key)");
+
+        populator.setUniqueValuesByConstruction(true);
+
+        // 1 + 39 + 39^2 strings shorter than 3 characters can be formed from the default alphabet
+        assertThat(populator.populate("foo", 1561), is(1561));
+
+        assertThat(count("foo"), is(1561));
+    }
+
+    @Test
+    public void uniqueValuesByConstructionContinueAcrossBatches() {
+        db.update("drop table if exists foo");
+        db.update("create table foo (id int primary key, name varchar(10) not null unique)");
+
+        populator.setUniqueValuesByConstruction(true);
+
+        assertThat(populator.populate("foo", 100), is(100));
+        assertThat(populator.populate("foo", 100), is(100));
+
+        assertThat(count("foo"), is(200));
+    }
+
+    @Test
+    public void uniqueValuesByConstructionFlag() {
+        assertThat(populator.isUniqueValuesByConstruction(), is(false));
+        populator.setUniqueValuesByConstruction(true);
+        assertThat(populator.isUniqueValuesByConstruction(), is(true));
+    }
+
+    @Test
+    public void populateInChunks() {
+        db.update("drop table if exists foo");
+        db.update("create table foo (id serial primary key, name varchar(10) not null unique)");
+
+        populator.setChunkSize(7);
+
+        assertThat(populator.populate("foo", 50), is(50));
+        assertThat(populator.populate("foo", 50), is(50));
+
+        assertThat(count("foo"), is(100));
+    }
+
+    @Test
+    public void uniqueConstraintsAreVerifiedAcrossChunks() {
+        db.update("drop table if exists table_with_only_two_possible_rows");
+        db.update("create table table_with_only_two_possible_rows (flag boolean primary key)");
+
+        populator.setChunkSize(1);
+
+        assertThat(populator.populate("table_with_only_two_possible_rows", 3), is(2));
+
+        assertThat(count("table_with_only_two_possible_rows"), is(2));
+    }
+
+    @Test
+    public void populateUsingGeneratorThreads() {
+        db.update("drop table if exists emp");
+        db.update("drop table if exists dept");
+        db.update("create table dept (id serial primary key, name varchar(10) not null)");
+        db.update("create table emp (id serial primary key, name varchar(10) not null unique, dept_id int references dept not null)");
+
+        populator.setChunkSize(10);
+        populator.setGeneratorThreads(3);
+
+        assertThat(populator.populate("dept", 10), is(10));
+        assertThat(populator.populate("emp", 1000), is(1000));
+
+        assertThat(count("emp"), is(1000));
+        assertThat(db.findUniqueInt("select count(distinct name) from emp"), is(1000));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void generatorThreadsMustNotBeNegative() {
+        populator.setGeneratorThreads(-1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void chunkSizeMustBePositive() {
+        populator.setChunkSize(0);
+    }
+
+    @Test
+    public void populateUsingMultipleRowsPerStatement() {
+        db.update("drop table if exists foo");
+        db.update("create table foo (name varchar(10) primary key, description varchar(20), counter int not null)");
+
+        populator.setRowsPerStatement(7);
+
+        assertThat(populator.populate("foo", 50), is(50));
+
+        assertThat(count("foo"), is(50));
+    }
+
+    @Test
+    public void populateUsingSingleRowPerStatement() {
+        db.update("drop table if exists foo");
+        db.update("create table foo (name varchar(10) primary key, counter int not null)");
+
+        populator.setRowsPerStatement(1);
+
+        assertThat(populator.populate("foo", 50), is(50));
+
+        assertThat(count("foo"), is(50));
+    }
+
+    @Test
+    public void seededPopulationDoesNotDependOnGeneratorThreads() {
+        db.update("drop table if exists foo");
+        db.update("create table foo (id serial primary key, name varchar(10) not null unique, counter int not null)");
+
+        populator.setSeed(42L);
+        populator.setChunkSize(10);
+
+        assertThat(populator.populate("foo", 100), is(100));
+        List<String> sequentialRows = db.findAll(String.class, "select name || ':' || counter from foo order by id");
+
+        db.update("delete from foo");
+        populator.setSeed(42L);
+        populator.setGeneratorThreads(4);
+
+        assertThat(populator.populate("foo", 100), is(100));
+        List<String> parallelRows = db.findAll(String.class, "select name || ':' || counter from foo order by id");
+
+        assertThat(parallelRows, is(sequentialRows));
+    }
+
+    @Test
+    public void consecutiveSeededPopulationsProduceDifferentRows() {
+        db.update("drop table if exists foo");
+        db.update("create table foo (id serial primary key, name varchar(10) not null, counter int not null)");
+
+        populator.setSeed(42L);
+        populator.populate("foo", 20);
+        populator.populate("foo", 20);
+
+        assertThat(count("foo"), is(40));
+        assertThat(db.findUniqueInt("select count(distinct name || ':' || counter) from foo"), is(40));
+    }
+
+    @Test
+    public void seededValuesOfColumnDoNotDependOnOtherColumns() {
+        db.update("drop table if exists foo");
+        db.update("create table foo (id serial primary key, name varchar(10) not null)");
+
+        populator.setSeed(42L);
+        populator.populate("foo", 20);
+        List<String> names = db.findAll(String.class, "select name from foo order by id");
+
+        db.update("drop table foo");
+        db.update("create table foo (id serial primary key, flag boolean not null, name varchar(10) not null)");
+
+        Populator otherPopulator = new Populator(db);
+        otherPopulator.setSeed(42L);
+        otherPopulator.populate("foo", 20);
+
+        assertThat(db.findAll(String.class, "select name from foo order by id"), is(names));
+    }
+
     @Test
     public void batchModeFlag() {
         assertThat(populator.isBatchMode(), is(true));
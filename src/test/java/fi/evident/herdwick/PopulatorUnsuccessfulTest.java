@@ -25,9 +25,18 @@ package fi.evident.herdwick;
 import fi.evident.dalesbred.Database;
 import fi.evident.dalesbred.junit.TestDatabaseProvider;
 import fi.evident.dalesbred.junit.TransactionalTests;
+import fi.evident.herdwick.generators.Generator;
+import org.jetbrains.annotations.NotNull;
 import org.junit.Rule;
 import org.junit.Test;
 
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
 public class PopulatorUnsuccessfulTest {
 
 
@@ -47,4 +56,159 @@ public class PopulatorUnsuccessfulTest {
 
         populator.populate("emp", 1);
     }
+
+    @Test(expected = IllegalStateException.class)
+    public void failuresOfGeneratorThreadsArePropagated() {
+        db.update("drop table if exists foo");
+        db.update("create table foo (id serial primary key, name varchar(10) not null)");
+
+        populator.registerGeneratorForColumn("foo", "name", new Generator<String>() {
+            @Override
+            public String randomValue(@NotNull Random random) {
+                throw new IllegalStateException("failing generator");
+            }
+        });
+
+        populator.setChunkSize(10);
+        populator.setGeneratorThreads(2);
+        populator.populate("foo", 100);
+    }
+
+    @Test
+    public void generatorThreadsExitWhenWritingFails() throws InterruptedException {
+        db.update("drop table if exists foo");
+        db.update("create table foo (id serial primary key, name varchar(10) not null)");
+
+        populator.registerGeneratorForColumn("foo", "name", new Generator<String>() {
+            @Override
+            public String randomValue(@NotNull Random random) {
+                return null;
+            }
+        });
+
+        populator.setChunkSize(10);
+        populator.setGeneratorThreads(2);
+
+        try {
+            populator.populate("foo", 1000);
+            fail("expected failure");
+        } catch (RuntimeException e) {
+            // expected
+        }
+
+        for (int i = 0; i < 50 && hasGeneratorThreads(); i++)
+            Thread.sleep(100);
+
+        assertFalse("generator threads are still running", hasGeneratorThreads());
+    }
+
+    private static boolean hasGeneratorThreads() {
+        for (Thread thread : Thread.getAllStackTraces().keySet())
+            if (thread.isAlive() && thread.getName().startsWith("herdwick-generator"))
+                return true;
+        return false;
+    }
+
+    @Test
+    public void failingRowsAreIsolated() {
+        db.update("drop table if exists foo");
+        db.update("create table foo (id serial primary key, x int not null check (x >= 0))");
+
+        populator.registerGeneratorForColumn("foo", "x", new Generator<Integer>() {
+            private int counter = 0;
+
+            @Override
+            public Integer randomValue(@NotNull Random random) {
+                int value = counter++;
+                return (value % 10 == 3) ? -value : value;
+            }
+        });
+
+        populator.setIsolateFailingRows(true);
+        populator.setChunkSize(20);
+
+        try {
+            populator.populate("foo", 50);
+            fail("expected RejectedRowsException");
+        } catch (RejectedRowsException e) {
+            assertThat(e.getInsertedRows(), is(45));
+            assertThat(e.getRejectedRows().size(), is(5));
+            assertThat(e.getRejectedRows().get(0).getValues().get(0), is((Object) (-3)));
+        }
+
+        assertThat(db.findUniqueInt("select count(*) from foo"), is(45));
+        assertThat(db.findUniqueInt("select count(*) from foo where x < 0"), is(0));
+    }
+
+    @Test
+    public void failuresNotCausedByDataAreNotIsolated() {
+        db.update("drop table if exists foo");
+        db.update("create table foo (id serial primary key, x int not null)");
+
+        populator.registerGeneratorForColumn("foo", "x", new Generator<Integer>() {
+            private int counter = 0;
+
+            @Override
+            public Integer randomValue(@NotNull Random random) {
+                if (counter == 0)
+                    db.update("drop table foo");
+                return counter++;
+            }
+        });
+
+        populator.setIsolateFailingRows(true);
+        populator.setChunkSize(20);
+
+        try {
+            populator.populate("foo", 50);
+            fail("expected failure");
+        } catch (RejectedRowsException e) {
+            fail("missing table was reported as rejected rows");
+        } catch (RuntimeException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void keysOfIsolatedRowsAreCaptured() {
+        populateParentsWithFailingRowsAndChildren(false);
+    }
+
+    @Test
+    public void preallocatedKeysOfIsolatedRowsAreCaptured() {
+        populateParentsWithFailingRowsAndChildren(true);
+    }
+
+    private void populateParentsWithFailingRowsAndChildren(boolean preallocateKeys) {
+        db.update("drop table if exists emp");
+        db.update("drop table if exists dept");
+        db.update("create table dept (id serial primary key, x int not null check (x >= 0))");
+        db.update("create table emp (id serial primary key, dept_id int references dept not null)");
+
+        populator.registerGeneratorForColumn("dept", "x", new Generator<Integer>() {
+            private int counter = 0;
+
+            @Override
+            public Integer randomValue(@NotNull Random random) {
+                int value = counter++;
+                return (value % 2 == 0) ? -1 - value : value;
+            }
+        });
+
+        populator.setIsolateFailingRows(true);
+        populator.setCaptureGeneratedKeys(true);
+        populator.setPreallocateKeys(preallocateKeys);
+
+        try {
+            populator.populate("dept", 10);
+            fail("expected RejectedRowsException");
+        } catch (RejectedRowsException e) {
+            assertThat(e.getInsertedRows(), is(5));
+        }
+
+        populator.populate("emp", 50);
+
+        assertThat(db.findUniqueInt("select count(*) from emp"), is(50));
+        assertThat(db.findUniqueInt("select count(distinct dept_id) from emp"), is(5));
+    }
 }
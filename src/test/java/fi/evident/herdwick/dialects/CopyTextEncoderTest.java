@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2012 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fi.evident.herdwick.dialects;
+
+import fi.evident.herdwick.generators.Row;
+import fi.evident.herdwick.generators.ValueType;
+import org.junit.Test;
+
+import java.io.UnsupportedEncodingException;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class CopyTextEncoderTest {
+
+    private final CopyTextEncoder encoder = new CopyTextEncoder(4);
+
+    @Test
+    public void simpleValues() throws Exception {
+        assertThat(encode(asList("foo", 42, true, false)), is("foo\t42\tt\tf\n"));
+    }
+
+    @Test
+    public void nullValues() throws Exception {
+        assertThat(encode(asList("foo", null)), is("foo\t\\N\n"));
+    }
+
+    @Test
+    public void specialCharactersAreEscaped() throws Exception {
+        assertThat(encode(asList("a\\b\tc\nd\re")), is("a\\\\b\\tc\\nd\\re\n"));
+    }
+
+    @Test
+    public void nonAsciiCharactersAreEncodedAsUtf8() throws Exception {
+        assertThat(encode(asList("ä€𝄞")), is("ä€𝄞\n"));
+    }
+
+    @Test
+    public void bytea() throws Exception {
+        assertThat(encode(asList((Object) new byte[] { 0x01, (byte) 0xAB })), is("\\\\x01ab\n"));
+    }
+
+    @Test
+    public void primitiveValues() throws Exception {
+        Row row = new Row(new ValueType[] { ValueType.INT, ValueType.LONG, ValueType.BOOLEAN, ValueType.DOUBLE, ValueType.OBJECT });
+        row.setInt(0, -42);
+        row.setLong(1, Long.MIN_VALUE);
+        row.setBoolean(2, true);
+        row.setDouble(3, 0.5);
+        row.set(4, null);
+
+        assertThat(encode(row), is("-42\t-9223372036854775808\tt\t0.5\t\\N\n"));
+    }
+
+    @Test
+    public void primitiveLongs() throws Exception {
+        Row row = new Row(new ValueType[] { ValueType.LONG, ValueType.LONG, ValueType.LONG });
+        row.setLong(0, 0);
+        row.setLong(1, 1234567890123L);
+        row.setLong(2, Long.MAX_VALUE);
+
+        assertThat(encode(row), is("0\t1234567890123\t9223372036854775807\n"));
+    }
+
+    @Test
+    public void asciiValues() throws Exception {
+        Row row = new Row(new ValueType[] { ValueType.ASCII, ValueType.ASCII, ValueType.ASCII });
+        row.set(0, "foo");
+        row.set(1, "a\\b\tc\nd\re");
+        row.set(2, null);
+
+        assertThat(encode(row), is("foo\ta\\\\b\\tc\\nd\\re\t\\N\n"));
+    }
+
+    @Test
+    public void multipleRows() throws Exception {
+        encoder.writeRow(asList("foo", 1));
+        encoder.writeRow(asList("bar", 2));
+
+        assertThat(contents(), is("foo\t1\nbar\t2\n"));
+
+        encoder.clear();
+        assertThat(encoder.size(), is(0));
+    }
+
+    private String encode(List<?> row) throws UnsupportedEncodingException {
+        encoder.writeRow(row);
+        return contents();
+    }
+
+    private String contents() throws UnsupportedEncodingException {
+        return new String(encoder.buffer(), 0, encoder.size(), "UTF-8");
+    }
+}
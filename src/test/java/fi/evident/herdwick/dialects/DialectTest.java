@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2012 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fi.evident.herdwick.dialects;
+
+import fi.evident.dalesbred.Database;
+import fi.evident.dalesbred.TransactionCallback;
+import fi.evident.dalesbred.TransactionContext;
+import fi.evident.dalesbred.junit.TestDatabaseProvider;
+import fi.evident.herdwick.model.Column;
+import fi.evident.herdwick.model.Name;
+import fi.evident.herdwick.model.Table;
+import fi.evident.herdwick.model.TableCollection;
+import fi.evident.herdwick.model.UniqueConstraint;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+
+import static java.util.Collections.singletonList;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests detection of dialects. The test suite has no PostgreSQL server, so {@link PostgreSQLDialect} is
+ * detected from stubbed metadata and its {@code COPY} path is not exercised against a database. Encoding
+ * of the rows for {@code COPY} is tested by {@link CopyTextEncoderTest}.
+ */
+public class DialectTest {
+
+    private final Database db = TestDatabaseProvider.databaseForProperties("hsqldb-connection.properties");
+
+    @Test
+    public void hsqldbDialectIsDetected() {
+        assertThat(Dialect.detect(db), is(instanceOf(HSQLDBDialect.class)));
+    }
+
+    @Test
+    public void postgreSQLDialectIsDetectedFromProductName() throws SQLException {
+        assertThat(Dialect.detect(metaDataForProduct("PostgreSQL")), is(instanceOf(PostgreSQLDialect.class)));
+    }
+
+    @Test
+    public void defaultDialectIsDetectedForUnknownDatabases() throws SQLException {
+        Dialect dialect = Dialect.detect(metaDataForProduct("Unknown Database"));
+
+        assertThat(dialect, is(instanceOf(DefaultDialect.class)));
+        assertThat(dialect, is(not(instanceOf(HSQLDBDialect.class))));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void defaultDialectDoesNotSupportVerifyingUniqueConstraintsInDatabase() {
+        new DefaultDialect().getCandidateTableName();
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void defaultDialectDoesNotSupportIgnoringConflicts() {
+        Table table = new TableCollection().addTable(new Name(null, "foo"));
+        Column x = table.addColumn("x");
+        UniqueConstraint constraint = new UniqueConstraint("foo_x", singletonList(x));
+
+        new DefaultDialect().createConflictIgnoringInsert(table, singletonList(x), singletonList(constraint), 1);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void defaultDialectDoesNotSupportPreallocatingKeys() {
+        Table table = new TableCollection().addTable(new Name(null, "foo"));
+        final Column id = table.addColumn("id");
+
+        db.withTransaction(new TransactionCallback<Long>() {
+            @Override
+            public Long execute(@NotNull TransactionContext tx) throws SQLException {
+                return new DefaultDialect().reserveKeys(tx.getConnection(), id, 10);
+            }
+        });
+    }
+
+    @NotNull
+    private static DatabaseMetaData metaDataForProduct(@NotNull final String productName) {
+        return (DatabaseMetaData) Proxy.newProxyInstance(DialectTest.class.getClassLoader(), new Class<?>[] { DatabaseMetaData.class }, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (method.getName().equals("getDatabaseProductName"))
+                    return productName;
+                throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2012 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fi.evident.herdwick.dialects;
+
+import fi.evident.dalesbred.Database;
+import fi.evident.dalesbred.TransactionCallback;
+import fi.evident.dalesbred.TransactionContext;
+import fi.evident.dalesbred.junit.TestDatabaseProvider;
+import fi.evident.dalesbred.junit.TransactionalTests;
+import fi.evident.herdwick.model.Column;
+import fi.evident.herdwick.model.Name;
+import fi.evident.herdwick.model.Table;
+import fi.evident.herdwick.model.TableCollection;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class HSQLDBDialectTest {
+
+    private final Database db = TestDatabaseProvider.databaseForProperties("hsqldb-connection.properties");
+
+    @Rule
+    public final TransactionalTests transactionalTests = new TransactionalTests(db);
+
+    @Test
+    public void reservingKeysDoesNotCommitTransaction() {
+        db.update("drop table if exists foo");
+        db.update("create table foo (id serial primary key, name varchar(10))");
+
+        Table table = new TableCollection().addTable(new Name(null, "FOO"));
+        final Column id = table.addColumn("ID");
+
+        int rowsAfterRollback = db.withTransaction(new TransactionCallback<Integer>() {
+            @Override
+            public Integer execute(@NotNull TransactionContext tx) throws SQLException {
+                Connection connection = tx.getConnection();
+                Statement statement = connection.createStatement();
+                try {
+                    statement.executeUpdate("insert into foo (name) values ('first')");
+
+                    assertThat(new HSQLDBDialect().reserveKeys(connection, id, 10), is(2L));
+
+                    connection.rollback();
+
+                    ResultSet rs = statement.executeQuery("select count(*) from foo");
+                    try {
+                        rs.next();
+                        return rs.getInt(1);
+                    } finally {
+                        rs.close();
+                    }
+                } finally {
+                    statement.close();
+                }
+            }
+        });
+
+        assertThat(rowsAfterRollback, is(0));
+    }
+
+    @Test
+    public void rowsAreInsertedInOrder() {
+        db.update("drop table if exists foo");
+        db.update("create table foo (id serial primary key, x int not null)");
+
+        final Table table = new TableCollection().addTable(new Name(null, "FOO"));
+        Column x = table.addColumn("X");
+        x.setDataType(Types.INTEGER);
+
+        final List<Column> columns = singletonList(x);
+        final List<List<Integer>> rows = new ArrayList<List<Integer>>();
+        for (int i = 0; i < 15; i++)
+            rows.add(singletonList(i));
+
+        final HSQLDBDialect dialect = new HSQLDBDialect();
+        dialect.setRowsPerStatement(10);
+
+        db.withTransaction(new TransactionCallback<Integer>() {
+            @Override
+            public Integer execute(@NotNull TransactionContext tx) throws SQLException {
+                return dialect.insertRows(tx.getConnection(), table.getName(), columns, rows);
+            }
+        });
+
+        assertThat(db.findAll(Integer.class, "select x from foo order by id"), is(asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14)));
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2012 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fi.evident.herdwick.dialects;
+
+import fi.evident.herdwick.model.Column;
+import fi.evident.herdwick.model.Name;
+import fi.evident.herdwick.model.Table;
+import fi.evident.herdwick.model.TableCollection;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static java.util.Arrays.asList;
+
+/**
+ * Compares inserting rows with different amounts of rows per statement on embedded HSQLDB.
+ * One row per statement corresponds to executing a plain JDBC batch of single-row inserts.
+ * <p>
+ * This is not run as part of the test suite. Run it with
+ * {@code java fi.evident.herdwick.dialects.MultiRowInsertBenchmark}.
+ */
+public final class MultiRowInsertBenchmark {
+
+    private static final int ROWS = 200000;
+    private static final int CHUNK_SIZE = 10000;
+    private static final int[] ROWS_PER_STATEMENT = { 1, 10, 100, 1000 };
+
+    private MultiRowInsertBenchmark() { }
+
+    public static void main(String[] args) throws SQLException {
+        Connection connection = DriverManager.getConnection("jdbc:hsqldb:mem:benchmark", "sa", "");
+        try {
+            connection.setAutoCommit(false);
+
+            Table table = new TableCollection().addTable(new Name(null, "BENCHMARK"));
+            List<Column> columns = asList(
+                    column(table, "ID", Types.INTEGER),
+                    column(table, "NAME", Types.VARCHAR),
+                    column(table, "FLAG", Types.BOOLEAN));
+
+            List<List<?>> rows = createRows();
+            DefaultDialect dialect = new DefaultDialect();
+
+            // Warm up the JIT and the database before doing the real measurements
+            for (int rowsPerStatement : ROWS_PER_STATEMENT)
+                run(connection, dialect, table, columns, rows, rowsPerStatement);
+
+            System.out.println("rows/statement        ms    rows/s");
+            for (int rowsPerStatement : ROWS_PER_STATEMENT) {
+                long elapsed = run(connection, dialect, table, columns, rows, rowsPerStatement);
+                System.out.printf("%14d %9d %9d%n", rowsPerStatement, elapsed / 1000000, ROWS * 1000000000L / elapsed);
+            }
+        } finally {
+            connection.close();
+        }
+    }
+
+    private static long run(Connection connection, Dialect dialect, Table table, List<Column> columns, List<List<?>> rows, int rowsPerStatement) throws SQLException {
+        connection.createStatement().execute("drop table if exists benchmark");
+        connection.createStatement().execute("create table benchmark (id int primary key, name varchar(20) not null, flag boolean not null)");
+
+        dialect.setRowsPerStatement(rowsPerStatement);
+
+        long start = System.nanoTime();
+        for (int offset = 0; offset < rows.size(); offset += CHUNK_SIZE) {
+            dialect.insertRows(connection, table.getName(), columns, rows.subList(offset, Math.min(offset + CHUNK_SIZE, rows.size())));
+            connection.commit();
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static List<List<?>> createRows() {
+        Random random = new Random(42);
+        List<List<?>> rows = new ArrayList<List<?>>(ROWS);
+        for (int i = 0; i < ROWS; i++)
+            rows.add(asList(i, "name-" + random.nextInt(), random.nextBoolean()));
+        return rows;
+    }
+
+    private static Column column(Table table, String name, int dataType) {
+        Column column = table.addColumn(name);
+        column.setDataType(dataType);
+        return column;
+    }
+}
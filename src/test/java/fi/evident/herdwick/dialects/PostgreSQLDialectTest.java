@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2012 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fi.evident.herdwick.dialects;
+
+import fi.evident.dalesbred.Database;
+import fi.evident.dalesbred.TransactionCallback;
+import fi.evident.dalesbred.TransactionContext;
+import fi.evident.dalesbred.junit.TestDatabaseProvider;
+import fi.evident.dalesbred.junit.TransactionalTests;
+import fi.evident.herdwick.model.Column;
+import fi.evident.herdwick.model.Name;
+import fi.evident.herdwick.model.Table;
+import fi.evident.herdwick.model.TableCollection;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Types;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests {@link PostgreSQLDialect} without a PostgreSQL server, against connections that can't be
+ * unwrapped to the connections of the PostgreSQL driver.
+ */
+public class PostgreSQLDialectTest {
+
+    private final Database db = TestDatabaseProvider.databaseForProperties("hsqldb-connection.properties");
+
+    @Rule
+    public final TransactionalTests transactionalTests = new TransactionalTests(db);
+
+    @Test
+    public void insertRowsFallsBackToInsertsIfConnectionCantBeUnwrapped() {
+        db.update("drop table if exists foo");
+        db.update("create table foo (x int not null)");
+
+        Table table = new TableCollection().addTable(new Name(null, "FOO"));
+        Column x = table.addColumn("X");
+        x.setDataType(Types.INTEGER);
+
+        final List<Column> columns = singletonList(x);
+        final List<List<Integer>> rows = asList(singletonList(1), singletonList(2), singletonList(3));
+
+        int inserted = db.withTransaction(new TransactionCallback<Integer>() {
+            @Override
+            public Integer execute(@NotNull TransactionContext tx) throws SQLException {
+                Connection connection = withoutUnwrapping(tx.getConnection());
+                return new PostgreSQLDialect().insertRows(connection, new Name(null, "FOO"), columns, rows);
+            }
+        });
+
+        assertThat(inserted, is(3));
+        assertThat(db.findUniqueInt("select count(*) from foo"), is(3));
+    }
+
+    /**
+     * Returns a connection delegating to given connection, but throwing from the methods
+     * for unwrapping like old drivers do.
+     */
+    @NotNull
+    private static Connection withoutUnwrapping(@NotNull final Connection connection) {
+        return (Connection) Proxy.newProxyInstance(PostgreSQLDialectTest.class.getClassLoader(), new Class<?>[] { Connection.class }, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if (method.getName().equals("isWrapperFor") || method.getName().equals("unwrap"))
+                    throw new SQLFeatureNotSupportedException("not implemented");
+
+                try {
+                    return method.invoke(connection, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+        });
+    }
+}
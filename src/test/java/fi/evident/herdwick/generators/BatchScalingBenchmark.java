@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2012 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fi.evident.herdwick.generators;
+
+import fi.evident.herdwick.model.*;
+
+import java.sql.Types;
+import java.util.Random;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+
+/**
+ * Measures how the cost of adding rows to a {@link Batch} scales with the size of the batch.
+ * If uniqueness checks take constant time, the time per row should stay roughly the same
+ * for all batch sizes.
+ * <p>
+ * This is not run as part of the test suite. Run it with a large enough heap, e.g.
+ * {@code java -Xmx6g fi.evident.herdwick.generators.BatchScalingBenchmark}.
+ */
+public final class BatchScalingBenchmark {
+
+    private static final int[] SIZES = { 1000000, 2000000, 5000000, 10000000 };
+
+    private BatchScalingBenchmark() { }
+
+    public static void main(String[] args) {
+        Table table = new TableCollection().addTable(new Name(null, "benchmark"));
+
+        Column id = table.addColumn("id");
+        id.setDataType(Types.INTEGER);
+
+        Column x = table.addColumn("x");
+        x.setDataType(Types.INTEGER);
+
+        Column y = table.addColumn("y");
+        y.setDataType(Types.INTEGER);
+
+        table.addUniqueConstraint(new UniqueConstraint("benchmark_pk", singletonList(id)));
+        table.addUniqueConstraint(new UniqueConstraint("benchmark_x_y", asList(x, y)));
+
+        // Warm up the JIT before doing the real measurements
+        run(table, SIZES[0]);
+
+        System.out.println("      rows        ms    ns/row");
+        for (int size : SIZES) {
+            System.gc();
+
+            long start = System.nanoTime();
+            run(table, size);
+            long elapsed = System.nanoTime() - start;
+
+            System.out.printf("%10d %9d %9.1f%n", size, elapsed / 1000000, (double) elapsed / size);
+        }
+    }
+
+    private static void run(Table table, int size) {
+        Random random = new Random(42);
+        Batch batch = new Batch(new TablePlan(table, UniqueVerification.CLIENT, false), size);
+
+        while (!batch.isReady())
+            batch.addRow(asList(random.nextInt(), random.nextInt(), random.nextInt()));
+    }
+}
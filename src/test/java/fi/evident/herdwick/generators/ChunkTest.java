@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2012 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fi.evident.herdwick.generators;
+
+import org.junit.Test;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class ChunkTest {
+
+    private final Chunk chunk = new Chunk(new ValueType[] { ValueType.INT, ValueType.OBJECT, ValueType.BOOLEAN }, 100);
+
+    @Test
+    public void rowsAreVisibleOnlyAfterTheyAreAdded() {
+        Row row = chunk.row(0);
+        row.setInt(0, 42);
+        row.set(1, "foo");
+        row.setBoolean(2, true);
+
+        assertThat(chunk.size(), is(0));
+
+        chunk.addRow();
+
+        assertThat(chunk.size(), is(1));
+        assertThat(chunk.get(0), is((Object) asList(42, "foo", true)));
+    }
+
+    @Test
+    public void primitiveValuesAreStoredInColumns() {
+        for (int i = 0; i < 100; i++) {
+            chunk.row(i).setInt(0, i);
+            chunk.addRow();
+        }
+
+        for (int i = 0; i < 100; i++)
+            assertThat(chunk.getInt(i, 0), is(i));
+    }
+
+    @Test
+    public void primitiveColumnsCanContainNulls() {
+        for (int i = 0; i < 100; i++) {
+            chunk.row(i).set(0, (i % 3 == 0) ? null : i);
+            chunk.addRow();
+        }
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(chunk.isNull(i, 0), is(i % 3 == 0));
+            assertThat(chunk.get(i).get(0), is((i % 3 == 0) ? null : (Object) i));
+        }
+    }
+
+    @Test
+    public void overwritingNullClearsIt() {
+        Row row = chunk.row(70);
+        row.set(0, null);
+        row.setInt(0, 7);
+
+        assertThat(row.isNull(0), is(false));
+        assertThat(row.get(0), is((Object) 7));
+    }
+
+    @Test
+    public void objectColumnsUseNullReferences() {
+        Row row = chunk.row(0);
+        row.set(1, null);
+
+        assertThat(row.isNull(1), is(true));
+        assertThat(row.get(1), is(nullValue()));
+    }
+
+    @Test
+    public void asciiColumnsStoreStringsAsBytes() {
+        Chunk chunk = new Chunk(new ValueType[] { ValueType.ASCII }, 3);
+        chunk.row(0).set(0, "foo");
+        chunk.row(1).set(0, null);
+        chunk.row(2).set(0, "barbaz");
+        chunk.moveRow(2, 1);
+
+        assertThat(chunk.getValue(0, 0), is((Object) "foo"));
+        assertThat(chunk.getValue(1, 0), is((Object) "barbaz"));
+        assertThat(chunk.isNull(1, 0), is(false));
+        assertThat(new String(chunk.getAsciiBytes(0), chunk.getAsciiOffset(1, 0), chunk.getAsciiLength(1, 0)), is("barbaz"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nonAsciiStringsAreRejectedFromAsciiColumns() {
+        new Chunk(new ValueType[] { ValueType.ASCII }, 1).row(0).set(0, "ä");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void valuesOfWrongTypeAreRejected() {
+        chunk.row(0).set(0, "foo");
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rowsCantBeAddedPastCapacity() {
+        Chunk chunk = new Chunk(new ValueType[] { ValueType.INT }, 1);
+        chunk.addRow();
+        chunk.addRow();
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2012 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fi.evident.herdwick.generators;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class GeneratorFillTest {
+
+    private final Random random = new SplittableRandom(42);
+
+    @Test
+    public void uniqueIntegersFilledInBulkMatchThoseGeneratedOneByOne() {
+        UniqueIntegerGenerator bulk = new UniqueIntegerGenerator(new SplittableRandom(1));
+        UniqueIntegerGenerator single = new UniqueIntegerGenerator(new SplittableRandom(1));
+
+        int[] values = new int[100];
+        bulk.fill(values, 0, 50, random);
+        bulk.fill(values, 50, 50, random);
+
+        for (int value : values)
+            assertThat(value, is(single.nextInt(random)));
+    }
+
+    @Test
+    public void uniqueStringsFilledInBulkMatchThoseGeneratedOneByOne() {
+        UniqueStringGenerator bulk = new UniqueStringGenerator(5, new SplittableRandom(1));
+        UniqueStringGenerator single = new UniqueStringGenerator(5, new SplittableRandom(1));
+
+        Object[] values = new Object[100];
+        bulk.fill(values, 0, 100, random);
+
+        for (Object value : values)
+            assertThat(value, is((Object) single.randomValue(random)));
+    }
+
+    @Test
+    public void booleansAreFilledOnlyInGivenRange() {
+        boolean[] values = new boolean[202];
+        Arrays.fill(values, true);
+        values[0] = false;
+        values[201] = false;
+
+        SimpleGenerators.BOOLEAN.fill(values, 1, 200, random);
+
+        int trues = 0;
+        for (int i = 1; i <= 200; i++)
+            if (values[i])
+                trues++;
+
+        assertThat(values[0], is(false));
+        assertThat(values[201], is(false));
+        assertTrue("expected both values, but got " + trues + " trues", trues > 50 && trues < 150);
+    }
+
+    @Test
+    public void integersAreFilledOnlyInGivenRange() {
+        int[] values = new int[9];
+        values[0] = 42;
+        values[8] = 42;
+
+        // An odd count leaves a value that is not drawn in a pair
+        SimpleGenerators.INTEGER.fill(values, 1, 7, random);
+
+        assertThat(values[0], is(42));
+        assertThat(values[8], is(42));
+
+        Set<Integer> distinct = new HashSet<Integer>();
+        for (int i = 1; i <= 7; i++)
+            distinct.add(values[i]);
+        assertThat(distinct.size(), is(7));
+    }
+
+    @Test
+    public void asciiStringsAreWrittenDirectlyToChunks() {
+        Chunk chunk = new Chunk(new ValueType[] { ValueType.ASCII }, 1000);
+        new SimpleStringGenerator(10, "abc").fill(chunk.getAsciiColumn(0), 0, 1000, random);
+
+        boolean[] seen = new boolean[3];
+        for (int i = 0; i < 1000; i++) {
+            String s = (String) chunk.getValue(i, 0);
+            assertTrue(s, s.length() < 10 && s.matches("[abc]*"));
+            for (char c : s.toCharArray())
+                seen[c - 'a'] = true;
+        }
+
+        assertThat(seen, is(new boolean[] { true, true, true }));
+    }
+
+    @Test
+    public void nonAsciiAlphabetsAreSupported() {
+        Object[] values = new Object[100];
+        new SimpleStringGenerator(10, "äö").fill(values, 0, values.length, random);
+
+        for (Object value : values)
+            assertTrue((String) value, ((String) value).matches("[äö]*"));
+    }
+
+    @Test
+    public void stringsAreShorterThanMaxLengthAndUseTheAlphabet() {
+        Object[] values = new Object[1000];
+        new SimpleStringGenerator(10, "ab").fill(values, 0, values.length, random);
+
+        for (Object value : values) {
+            String s = (String) value;
+            assertTrue(s, s.length() < 10 && s.matches("[ab]*"));
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2012 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fi.evident.herdwick.generators;
+
+import org.junit.Test;
+
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class KeyedPermutationTest {
+
+    private final Random random = new Random();
+
+    @Test
+    public void permutationIsBijection() {
+        for (int size = 1; size <= 300; size++) {
+            KeyedPermutation permutation = new KeyedPermutation(size, random);
+            BitSet seen = new BitSet(size);
+
+            for (int i = 0; i < size; i++) {
+                long value = permutation.permute(i);
+                assertTrue("value " + value + " out of range for size " + size, value >= 0 && value < size);
+                seen.set((int) value);
+            }
+
+            assertThat(seen.cardinality(), is(size));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void valuesOutsideOfRangeAreRejected() {
+        new KeyedPermutation(10, random).permute(10);
+    }
+
+    @Test
+    public void uniqueStringsAreDistinctAndShorterThanMaxLength() {
+        // Alphabet of 3 characters produces 1 + 3 + 9 strings shorter than 3 characters
+        UniqueStringGenerator generator = new UniqueStringGenerator(3, "abc", random);
+        Set<String> strings = new HashSet<String>();
+
+        for (int i = 0; i < 13; i++) {
+            String value = generator.randomValue(random);
+            assertTrue("too long value: " + value, value.length() < 3);
+            strings.add(value);
+        }
+
+        assertThat(strings.size(), is(13));
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2012 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fi.evident.herdwick.generators;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares generating chunks one column at a time, as {@link DataGenerator} does, with generating
+ * them one row at a time, which calls every generator of a mixed set of columns for each row. The
+ * latter corresponds to the interpreted loop of generators that code generation would be used to
+ * specialize, so the difference shows how much there is to gain from it.
+ * <p>
+ * This is not run as part of the test suite. Run it with
+ * {@code java fi.evident.herdwick.generators.RowGeneratorBenchmark}.
+ */
+public final class RowGeneratorBenchmark {
+
+    private static final int CHUNK_SIZE = 1000;
+    private static final int ROUNDS = 2000;
+
+    private RowGeneratorBenchmark() { }
+
+    public static void main(String[] args) {
+        RowGenerator generator = createRowGenerator();
+
+        // Warm up the JIT before doing the real measurements
+        for (int i = 0; i < 3; i++) {
+            run(generator, false);
+            run(generator, true);
+        }
+
+        System.out.println("mode            ms    ns/row");
+        report("row at a time", generator, true);
+        report("column at a time", generator, false);
+    }
+
+    private static void report(@NotNull String mode, @NotNull RowGenerator generator, boolean rowAtATime) {
+        System.gc();
+
+        long start = System.nanoTime();
+        run(generator, rowAtATime);
+        long elapsed = System.nanoTime() - start;
+
+        System.out.printf("%-16s %6d %9.1f%n", mode, elapsed / 1000000, (double) elapsed / (CHUNK_SIZE * ROUNDS));
+    }
+
+    private static void run(@NotNull RowGenerator generator, boolean rowAtATime) {
+        Random[] streams = generator.sharedStreams(new SplittableRandom(42));
+
+        for (int round = 0; round < ROUNDS; round++) {
+            Chunk chunk = new Chunk(generator.getTypes(), CHUNK_SIZE);
+            if (rowAtATime) {
+                for (int row = 0; row < CHUNK_SIZE; row++)
+                    generator.fill(chunk, row, 1, streams);
+            } else {
+                generator.fill(chunk, 0, CHUNK_SIZE, streams);
+            }
+        }
+    }
+
+    @NotNull
+    private static RowGenerator createRowGenerator() {
+        List<Generator<?>> generators = Arrays.<Generator<?>>asList(
+                SimpleGenerators.INTEGER,
+                new SimpleStringGenerator(20),
+                SimpleGenerators.BOOLEAN,
+                new LongGenerator() {
+                    @Override
+                    public long nextLong(@NotNull Random random) {
+                        return random.nextLong();
+                    }
+                },
+                new DoubleGenerator() {
+                    @Override
+                    public double nextDouble(@NotNull Random random) {
+                        return random.nextDouble();
+                    }
+                },
+                new Generator<String>() {
+                    @Nullable
+                    @Override
+                    public String randomValue(@NotNull Random random) {
+                        return random.nextBoolean() ? "yes" : "no";
+                    }
+                },
+                new UniqueIntegerGenerator(new Random(42)));
+
+        ValueType[] types = new ValueType[generators.size()];
+        long[] streamKeys = new long[generators.size()];
+        List<ColumnSetGenerator> columnSetGenerators = new ArrayList<ColumnSetGenerator>(generators.size());
+        for (int i = 0; i < generators.size(); i++) {
+            ColumnSetGenerator columnSetGenerator = new SingleValueColumnSetGenerator(i, generators.get(i));
+            columnSetGenerator.declareTypes(types);
+            columnSetGenerators.add(columnSetGenerator);
+            streamKeys[i] = i;
+        }
+
+        return new RowGenerator(types, columnSetGenerators, streamKeys);
+    }
+}
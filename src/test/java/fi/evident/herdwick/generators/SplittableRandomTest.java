@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2012 Evident Solutions Oy
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package fi.evident.herdwick.generators;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class SplittableRandomTest {
+
+    @Test
+    public void producesTheReferenceSequenceOfSplitMix64() {
+        SplittableRandom random = new SplittableRandom(0);
+
+        assertThat(random.nextLong(), is(0xe220a8397b1dcdafL));
+        assertThat(random.nextLong(), is(0x6e789e6aa1b965f4L));
+    }
+
+    @Test
+    public void instancesWithSameSeedProduceSameValues() {
+        SplittableRandom random1 = new SplittableRandom(42);
+        SplittableRandom random2 = new SplittableRandom(42);
+
+        for (int i = 0; i < 100; i++)
+            assertThat(random1.nextInt(1000), is(random2.nextInt(1000)));
+
+        SplittableRandom split1 = random1.split();
+        SplittableRandom split2 = random2.split();
+
+        for (int i = 0; i < 100; i++)
+            assertThat(split1.nextLong(), is(split2.nextLong()));
+    }
+
+    @Test
+    public void splitStreamsDifferFromEachOther() {
+        SplittableRandom random = new SplittableRandom(42);
+        SplittableRandom split1 = random.split();
+        SplittableRandom split2 = random.split();
+
+        assertThat(split1.nextLong(), is(not(split2.nextLong())));
+        assertThat(split1.nextLong(), is(not(random.nextLong())));
+    }
+
+    @Test
+    public void streamsForKeysDependOnlyOnSeedAndKeys() {
+        assertThat(SplittableRandom.forKeys(42, 1, 2).nextLong(), is(SplittableRandom.forKeys(42, 1, 2).nextLong()));
+        assertThat(SplittableRandom.forKeys(42, 1, 2).nextLong(), is(not(SplittableRandom.forKeys(42, 1, 3).nextLong())));
+        assertThat(SplittableRandom.forKeys(42, 1, 2).nextLong(), is(not(SplittableRandom.forKeys(43, 1, 2).nextLong())));
+    }
+
+    @Test
+    public void boundedValuesAreWithinBounds() {
+        SplittableRandom random = new SplittableRandom(42);
+
+        for (int bound = 1; bound < 1000; bound++) {
+            int value = random.nextInt(bound);
+            assertTrue(value >= 0 && value < bound);
+
+            double d = random.nextDouble();
+            assertTrue(d >= 0 && d < 1);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nonPositiveBoundsAreRejected() {
+        new SplittableRandom().nextInt(0);
+    }
+}